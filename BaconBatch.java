@@ -0,0 +1,349 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs a file of game commands without the prompts, printing the same text the interactive game would print for
+ * each command, in the same order. The commands are read the way the game reads them - u <name> makes name the
+ * center for the commands after it - and may be p <name>, s <low> <high>, i, u <name>, d <low> <high>,
+ * c <#> [pivots], f <prefix>, w <#> <name>, y <from> <to> <name> or q. The one game command not supported is
+ * a <file>: the whole file runs against the graph as it was when the batch started, so a delta file can't change it
+ * partway through, and an a line prints Invalid input like any other line the batch can't run.
+ *
+ * Instead of searching once per command, commands are answered a chunk at a time, grouped by center: each center
+ * whose group needs a shortest path tree (p and s) gets one BFS, shared by every command of its group and kept for
+ * the next chunk while it is still in use, and centers that only need an average separation (u) are searched
+ * together, 64 to a sweep, with GraphLibrary.averageSeparations. The answer to each different c is worked out once
+ * and printed again for every repeat, since the graph doesn't change.
+ *
+ * Parsing, answering and formatting run on three threads, handing chunks of commands along bounded queues, so the
+ * next chunk is read while this one is answered and the one before is written out.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class BaconBatch {
+    private static final int CHUNK = 4096;          //commands answered together
+    private static final int QUEUED_CHUNKS = 4;     //chunks that can wait between two stages
+    private static final int TREE_CACHE_SIZE = 4;   //centers whose path trees are kept between chunks
+    private static final Command[] END = new Command[0];    //passed along after the last chunk
+
+    private CSRGraph graph;             //frozen actorsToMovies graph
+    private ComponentIndex components;  //component labels of graph
+    private DegreeIndex degrees;        //actors of graph ordered by degree
+    private NameIndex actorNames;       //actors of graph by name, ignoring case
+    private GraphState state;           //the version all of the above come from, for f
+    private Map<String, ShortestPathResult> trees;  //cache: center -> shortest paths from it, least recently used first
+    private Map<String, String> centers;            //c arguments -> what c prints for them
+
+    /**
+     * One command of the file and, once answered, what is needed to print it
+     */
+    private static class Command {
+        char op;                    //command letter, or 0 for a line that isn't a valid command
+        String center;              //center of the universe when the command runs
+        String typed;               //p and u: the name as typed
+        String name;                //p and u: the actor named, or null if no actor has that name
+        int low, high;              //s and d: the range asked for
+        List<String> path;          //p: path from the center to name
+        ShortestPathResult tree;    //s: tree from the center
+        double avSeparation;        //u: average separation of the new center
+        int number, pivots;         //c: centers asked for, and pivots to estimate from or -1
+        String text;                //c: what the game prints; f: the prefix
+        EdgeRule rule;              //w and y: edges the path may use
+        int[] constrained;          //w and y: vertex indices from name to the center, empty if there is no path
+    }
+
+    /**
+     * @param game - loaded game whose graph the commands run against
+     */
+    public BaconBatch(BaconGame game) {
+        state = game.getState(); //one consistent version, whatever updates come later
+        graph = state.getGraph();
+        components = state.getComponents();
+        degrees = state.getDegrees();
+        actorNames = state.getActorNames();
+        trees = new LinkedHashMap<String, ShortestPathResult>(16, 0.75f, true);
+        centers = new HashMap<String, String>();
+    }
+
+    /**
+     * run every command of a file, writing the answers in order
+     * @param in - the commands, one per line
+     * @param out - where the answers go
+     * @param center - center of the universe before the first u command
+     */
+    public void run(BufferedReader in, PrintStream out, String center) {
+        BlockingQueue<Command[]> parsed = new ArrayBlockingQueue<Command[]>(QUEUED_CHUNKS);
+        BlockingQueue<Command[]> answered = new ArrayBlockingQueue<Command[]>(QUEUED_CHUNKS);
+        Thread parser = new Thread(() -> parse(in, parsed, center), "batch-parser");
+        Thread solver = new Thread(() -> {
+            try {
+                Command[] chunk;
+                while ((chunk = take(parsed)) != END) {
+                    answer(chunk);
+                    put(answered, chunk);
+                }
+            }
+            catch (RuntimeException e) {
+                System.err.println("Cannot answer commands.\n" + e);
+            }
+            finally {
+                put(answered, END); //the writer stops here even if answering failed
+            }
+        }, "batch-solver");
+        parser.setDaemon(true); //a reader blocked on a failed solver mustn't keep the game running
+        solver.setDaemon(true);
+        parser.start();
+        solver.start();
+        Command[] chunk;
+        while ((chunk = take(answered)) != END) { //format on this thread while later chunks are read and answered
+            StringBuilder text = new StringBuilder();
+            for (Command command: chunk) {
+                format(command, text);
+            }
+            out.print(text);
+        }
+        out.flush();
+    }
+
+    /**
+     * read the commands into chunks, working out which center each one runs against
+     * @param in - the commands, one per line
+     * @param parsed - where the chunks go, followed by END
+     * @param center - center before the first u command
+     */
+    private void parse(BufferedReader in, BlockingQueue<Command[]> parsed, String center) {
+        List<Command> chunk = new ArrayList<Command>(CHUNK);
+        try {
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("q")) {
+                if (line.isEmpty()) continue;
+                Command command = new Command();
+                try {
+                    command.op = line.charAt(0);
+                    if (command.op == 'p' || command.op == 'u') {
+                        command.typed = line.substring(2);
+                        command.name = BaconGame.resolveActor(graph, actorNames, command.typed);
+                        if (command.op == 'u' && command.name != null) center = command.name; //a miss keeps the center
+                    }
+                    else if (command.op == 's' || command.op == 'd') {
+                        command.low = Integer.parseInt(line.split(" ")[1]);
+                        command.high = Integer.parseInt(line.split(" ")[2]);
+                    }
+                    else if (command.op == 'c') {
+                        String[] tokens = line.split(" ");
+                        command.number = Integer.parseInt(tokens[1]);
+                        command.pivots = tokens.length > 2 ? Integer.parseInt(tokens[2]) : -1;
+                    }
+                    else if (command.op == 'f') {
+                        command.text = line.substring(2);
+                    }
+                    else if (command.op == 'w') {
+                        String[] tokens = line.split(" ", 3);
+                        command.rule = EdgeRule.ANY.withMinShared(Integer.parseInt(tokens[1])).weighted();
+                        command.typed = tokens[2];
+                        command.name = BaconGame.resolveActor(graph, actorNames, command.typed);
+                    }
+                    else if (command.op == 'y') {
+                        String[] tokens = line.split(" ", 4);
+                        command.rule = EdgeRule.ANY.inYears(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+                        command.typed = tokens[3];
+                        command.name = BaconGame.resolveActor(graph, actorNames, command.typed);
+                    }
+                    else if (command.op != 'i') {
+                        command.op = 0;
+                    }
+                }
+                catch (RuntimeException e) { //missing or bad arguments
+                    command.op = 0;
+                }
+                command.center = center;
+                chunk.add(command);
+                if (chunk.size() == CHUNK) {
+                    put(parsed, chunk.toArray(new Command[0]));
+                    chunk.clear();
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("IO error while reading commands.\n" + e.getMessage());
+        }
+        if (!chunk.isEmpty()) put(parsed, chunk.toArray(new Command[0]));
+        put(parsed, END);
+    }
+
+    /**
+     * answer a chunk of commands, with one search per center
+     * @param chunk - commands to answer
+     */
+    private void answer(Command[] chunk) {
+        long start = Metrics.start();
+        Map<String, List<Command>> byCenter = new LinkedHashMap<String, List<Command>>(); //centers in order of first use
+        Set<String> needTree = new HashSet<String>();
+        for (Command command: chunk) {
+            if (command.op == 's' || ((command.op == 'p' || command.op == 'u') && command.name != null)) {
+                byCenter.computeIfAbsent(command.center, c -> new ArrayList<Command>()).add(command);
+                if (command.op != 'u') needTree.add(command.center);
+            }
+        }
+
+        List<String> separationOnly = new ArrayList<String>(); //centers whose average separation is all that's needed
+        for (String center: byCenter.keySet()) {
+            if (!needTree.contains(center) && !trees.containsKey(center) && graph.indexOf(center) >= 0) {
+                separationOnly.add(center);
+            }
+        }
+        int[] sources = new int[separationOnly.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = graph.indexOf(separationOnly.get(i));
+        }
+        double[] separations = GraphLibrary.averageSeparations(graph, sources, GraphLibrary.defaultThreads());
+        Map<String, Double> separationOf = new HashMap<String, Double>();
+        for (int i = 0; i < sources.length; i++) {
+            separationOf.put(separationOnly.get(i), separations[i]);
+        }
+
+        for (Map.Entry<String, List<Command>> group: byCenter.entrySet()) {
+            String center = group.getKey();
+            ShortestPathResult tree = separationOf.containsKey(center) ? null : tree(center);
+            for (Command command: group.getValue()) {
+                if (command.op == 'p') command.path = tree.pathTo(command.name);
+                else if (command.op == 's') command.tree = tree;
+                else command.avSeparation = tree != null ? tree.averageSeparation() : separationOf.get(center);
+            }
+        }
+
+        for (Command command: chunk) { //the rest need searches of their own
+            if (command.op == 'c') {
+                command.text = centers.computeIfAbsent(command.number + " " + command.pivots, k -> {
+                    ByteArrayOutputStream text = new ByteArrayOutputStream();
+                    BaconGame.listCenters(graph, components, command.number, command.pivots,
+                            new PrintStream(text, true));
+                    return text.toString();
+                });
+            }
+            else if ((command.op == 'w' || command.op == 'y') && command.name != null) {
+                int center = graph.indexOf(command.center);
+                command.constrained = center < 0 ? new int[0]
+                        : GraphLibrary.constrainedPath(graph, graph.indexOf(command.name), center, command.rule);
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.time("batch.chunk", start);
+            Metrics.count("batch.commands", chunk.length);
+        }
+    }
+
+    /**
+     * @param center - name of the center
+     * @return - shortest path tree from center, searched only if it isn't one of the few kept from earlier chunks
+     */
+    private ShortestPathResult tree(String center) {
+        ShortestPathResult tree = trees.get(center);
+        if (Metrics.ENABLED) Metrics.recordCache("batch", tree != null);
+        if (tree == null) {
+            tree = GraphLibrary.shortestPaths(graph, center);
+            trees.put(center, tree);
+            if (trees.size() > TREE_CACHE_SIZE) trees.remove(trees.keySet().iterator().next());
+        }
+        return tree;
+    }
+
+    /**
+     * append what the game would print for an answered command
+     * @param command - the answered command
+     * @param text - where the text goes
+     */
+    private void format(Command command, StringBuilder text) {
+        if ((command.op == 'p' || command.op == 'u' || command.op == 'w' || command.op == 'y') && command.name == null) {
+            text.append(BaconGame.describeUnknownActor(command.typed, BaconGame.suggestActors(graph, actorNames,
+                    command.typed)));
+            return;
+        }
+        switch (command.op) {
+            case 'p':
+                text.append(BaconGame.describePath(graph, command.center, command.name, command.path));
+                break;
+            case 's':
+                for (int i = command.tree.levelStart(command.low); i < command.tree.levelEnd(command.high); i++) {
+                    int vertex = command.tree.vertexAt(i);
+                    text.append(graph.nameOf(vertex)).append(" has a ").append(command.center).append(" number of ")
+                            .append(command.tree.distanceTo(vertex)).append('\n');
+                }
+                break;
+            case 'i':
+                int centerComponent = components.componentOf(command.center);
+                text.append("The actors with infinite separation from the current center, ").append(command.center)
+                        .append(", are:\n");
+                for (int v = 0; v < graph.numVertices(); v++) {
+                    if (components.componentOf(v) != centerComponent) text.append(graph.nameOf(v)).append('\n');
+                }
+                break;
+            case 'u':
+                if (graph.indexOf(command.center) < 0) { //as GraphLibrary.averageSeparation reports an empty tree
+                    text.append("The provided tree is empty or only has one vertex\n");
+                    command.avSeparation = 0;
+                }
+                text.append(BaconGame.describeCenter(command.center, components.reachableCount(command.center)-1,
+                        graph.numVertices()-1, command.avSeparation)).append('\n');
+                break;
+            case 'd':
+                for (int i = degrees.rangeStart(command.low); i < degrees.rangeEnd(command.high); i++) {
+                    text.append(graph.nameOf(degrees.vertexAt(i))).append(" has a degree of ").append(degrees.degreeAt(i))
+                            .append('\n');
+                }
+                break;
+            case 'c':
+                text.append(command.text);
+                break;
+            case 'f':
+                text.append(BaconGame.describeMatches(state, command.text));
+                break;
+            case 'w':
+            case 'y':
+                text.append(BaconGame.describeConstrainedPath(graph, command.rule, command.center, command.name,
+                        command.constrained));
+                break;
+            default:
+                text.append("Invalid input\n\n");
+        }
+    }
+
+    private static Command[] take(BlockingQueue<Command[]> queue) {
+        try {
+            return queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running commands", e);
+        }
+    }
+
+    private static void put(BlockingQueue<Command[]> queue, Command[] chunk) {
+        try {
+            queue.put(chunk);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running commands", e);
+        }
+    }
+
+    /**
+     * run a file of commands against a game, writing the answers to stdout
+     * @param game - loaded game
+     * @param fileName - file of commands
+     */
+    public static void runFile(BaconGame game, String fileName) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8))) {
+            new BaconBatch(game).run(in, System.out, game.getCenterOfUniverse());
+        }
+        catch (FileNotFoundException e) {
+            System.err.println("Cannot open file. \n" + e.getMessage());
+        }
+        catch (IOException e) {
+            System.err.println("IO error while reading.\n" + e.getMessage());
+        }
+    }
+}
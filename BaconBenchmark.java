@@ -0,0 +1,291 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Benchmarks for loading the game and for every query path, run on synthetic small-world graphs at several scales:
+ *
+ *   java BaconBenchmark [--scales 10000,100000,1000000,10000000] [--only load,bfs,cmd.c] [--warmup 2]
+ *                       [--iterations 5] [--time 1000]
+ *
+ * Each benchmark is run like a JMH benchmark in sample-time mode: warmup iterations and then measured iterations of
+ * --time milliseconds each, with the JVM's allocation and GC counters read around the measured iterations, the way
+ * JMH's GC profiler reads them. It reports throughput, latency percentiles, bytes allocated per operation and the
+ * collections that ran. Per-invocation setup (a fresh game for each load benchmark) is not timed.
+ *
+ * The graphs are Watts-Strogatz small worlds made of movies: each movie casts a few actors who sit near each other on
+ * a ring, with a small chance per credit of casting someone anywhere instead, which gives the short average
+ * separation of the real data. Kevin Bacon is actor 0, and one actor in a hundred has no credits, so every query has
+ * actors with infinite separation to report. Graphs are generated from a fixed seed, so runs are comparable.
+ *
+ * avSepMap and c with a negative number search from every actor in the universe, so they only run on scales up to
+ * ALL_PAIRS_LIMIT.
+ *
+ * The game renumbers its actors in the VertexOrder named by -Dbacon.order (bfs unless given), so running with each of
+ * load, degree, bfs and rcm compares the orders. The ring already numbers costars close together, so load order is
+ * near its best here; generated IMDb-shaped inputs (DatasetGenerator) show what the orders do for real numbering.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class BaconBenchmark {
+    private static final int[] DEFAULT_SCALES = {10000, 100000, 1000000};
+    private static final int ALL_PAIRS_LIMIT = 20000;   //largest scale the all-pairs benchmarks run on
+    private static final long SEED = 4;                 //same graphs and queries every run
+    private static final double MOVIES_PER_ACTOR = 0.6; //movies generated per actor
+    private static final int RING_WINDOW = 20;          //a cast is drawn from this many neighbors on the ring
+    private static final double REWIRE = 0.1;           //chance a credit goes to a random actor instead
+    private static final int QUERIES = 1024;            //distinct query arguments cycled through
+
+    private static volatile Object sink;                //results are stored here so the JIT can't drop the work
+
+    private int warmup = 2;                 //warmup iterations per benchmark
+    private int iterations = 5;             //measured iterations per benchmark
+    private long iterationNanos = 1000000000L;  //length of each iteration
+    private List<String> only;              //prefixes of the benchmarks to run, or null for all
+
+    /**
+     * One benchmarked operation. prepare runs before each invocation without being timed.
+     */
+    private interface Operation {
+        default void prepare(int i) {}
+        Object run(int i);
+    }
+
+    /**
+     * write a small-world game of the three input files to a directory
+     * @param dir - directory for actors.txt, movies.txt and movie-actors.txt
+     * @param numActors - number of actors
+     * @param seed - random seed
+     * @return - paths of the actors, movies and movie-actors files
+     * @throws IOException if a file can't be written
+     */
+    public static String[] writeSmallWorld(File dir, int numActors, long seed) throws IOException {
+        Random random = new Random(seed);
+        String[] files = {new File(dir, "actors.txt").getPath(), new File(dir, "movies.txt").getPath(),
+                new File(dir, "movie-actors.txt").getPath()};
+        int numMovies = (int) (numActors * MOVIES_PER_ACTOR);
+        int credited = numActors - numActors / 100; //the last one in a hundred get no credits
+        try (Writer out = writer(files[0])) {
+            for (int id = 0; id < numActors; id++) {
+                out.write(id + "|" + (id == 0 ? "Kevin Bacon" : "Actor " + id) + "\n");
+            }
+        }
+        try (Writer out = writer(files[1])) {
+            for (int id = 0; id < numMovies; id++) {
+                out.write(id + "|Movie " + id + " (" + (1930 + random.nextInt(90)) + ")\n");
+            }
+        }
+        try (Writer out = writer(files[2])) {
+            for (int id = 0; id < numMovies; id++) {
+                int start = random.nextInt(credited);
+                int castSize = 2 + (int) Math.min(30, -3 * Math.log(1 - random.nextDouble())); //mostly small casts
+                for (int c = 0; c < castSize; c++) {
+                    int actor = random.nextDouble() < REWIRE ? random.nextInt(credited)
+                            : (start + random.nextInt(RING_WINDOW)) % credited;
+                    out.write(id + "|" + actor + "\n");
+                }
+            }
+        }
+        return files;
+    }
+
+    private static Writer writer(String fileName) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * run every selected benchmark at one scale, printing a line per benchmark
+     * @param numActors - number of actors in the generated graph
+     * @throws IOException if the graph can't be written
+     */
+    public void runScale(int numActors) throws IOException {
+        File dir = Files.createTempDirectory("bacon-benchmark").toFile();
+        try {
+            String[] files = writeSmallWorld(dir, numActors, SEED);
+            BaconGame game = new BaconGame(files, null);
+            CSRGraph graph = game.getActorsToMovies();
+            ComponentIndex components = game.getComponents();
+            int[] universe = components.members(components.componentOf("Kevin Bacon"));
+            Random random = new Random(SEED);
+            String[] centers = new String[QUERIES], targets = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                centers[i] = graph.nameOf(universe[random.nextInt(universe.length)]);
+                targets[i] = graph.nameOf(random.nextInt(graph.numVertices()));
+            }
+            List<Graph<String, Set<String>>> trees = new ArrayList<Graph<String, Set<String>>>();
+            for (int i = 0; i < 8; i++) { //a few trees for the queries that read one
+                trees.add(GraphLibrary.bfs(graph, centers[i]));
+            }
+            PrintStream nowhere = new PrintStream(new OutputStream() { //command output, counted but not kept
+                public void write(int b) {}
+                public void write(byte[] b, int off, int len) {}
+            });
+            System.out.println("\n" + numActors + " actors, " + graph.numEdges() + " costar edges, universe of "
+                    + universe.length);
+            System.out.println(String.format("%-22s %12s %10s %10s %10s %10s %10s %14s %6s %8s", "benchmark", "ops/s",
+                    "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "alloc B/op", "gcs", "gc ms"));
+
+            measure("load.actors", new Operation() {
+                BaconGame fresh;
+                public void prepare(int i) { fresh = new BaconGame(null, null); }
+                public Object run(int i) { fresh.createActorsMap(files[0]); return fresh; }
+            });
+            measure("load.movies", new Operation() {
+                BaconGame fresh;
+                public void prepare(int i) { fresh = new BaconGame(null, null); fresh.createActorsMap(files[0]); }
+                public Object run(int i) { fresh.createMoviesMap(files[1]); return fresh; }
+            });
+            measure("load.credits", new Operation() {
+                BaconGame fresh;
+                public void prepare(int i) {
+                    fresh = new BaconGame(null, null);
+                    fresh.createActorsMap(files[0]);
+                    fresh.createMoviesMap(files[1]);
+                }
+                public Object run(int i) { fresh.createActorsToMovies(files[2]); return fresh; }
+            });
+
+            measure("bfs", i -> GraphLibrary.bfs(graph, centers[i % QUERIES]));
+            measure("getPath", i -> GraphLibrary.getPath(trees.get(i % trees.size()), targets[i % QUERIES]));
+            measure("shortestPath", i -> GraphLibrary.shortestPath(graph, centers[i % QUERIES], targets[i % QUERIES]));
+            measure("missingVertices", i -> GraphLibrary.missingVertices(graph, trees.get(i % trees.size())));
+            measure("averageSeparation", i -> GraphLibrary.averageSeparation(trees.get(i % trees.size()), centers[i % trees.size()]));
+            if (numActors <= ALL_PAIRS_LIMIT) measure("avSepMap", i -> GraphLibrary.avSepMap(graph));
+
+            //each REPL command end to end, as typed at the prompt; p runs first, before any center tree is cached
+            measure("cmd.p", i -> BaconGame.runCommand(game, "p " + targets[i % QUERIES], nowhere));
+            measure("cmd.s", i -> BaconGame.runCommand(game, "s 1 2", nowhere));
+            measure("cmd.i", i -> BaconGame.runCommand(game, "i", nowhere));
+            measure("cmd.d", i -> BaconGame.runCommand(game, "d 20 100000", nowhere));
+            measure("cmd.u", i -> BaconGame.runCommand(game, "u " + centers[i % QUERIES], nowhere));
+            measure("cmd.c", i -> BaconGame.runCommand(game, "c 10", nowhere));
+            if (numActors <= ALL_PAIRS_LIMIT) measure("cmd.c-bottom", i -> BaconGame.runCommand(game, "c -10", nowhere));
+        }
+        finally {
+            for (File file: dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * run one benchmark and print its line, unless it wasn't selected
+     * @param name - name of the benchmark
+     * @param operation - what to run
+     */
+    private void measure(String name, Operation operation) {
+        if (only != null && only.stream().noneMatch(name::startsWith)) return;
+        int invocation = 0;
+        for (int w = 0; w < warmup; w++) {
+            invocation = iterate(operation, invocation, null);
+        }
+        System.gc();
+        LatencyHistogram latencies = new LatencyHistogram();
+        long gcs = collections(), gcMillis = collectionMillis();
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        for (int m = 0; m < iterations; m++) {
+            invocation = iterate(operation, invocation, latencies);
+        }
+        long allocated = allocatedSince(allocatedBefore);
+        gcs = collections() - gcs;
+        gcMillis = collectionMillis() - gcMillis;
+        long ops = latencies.count();
+        double opsPerSecond = ops / (Math.max(1, latencies.sum()) / 1e9); //untimed setup doesn't count against throughput
+        System.out.println(String.format("%-22s %12.1f %10.1f %10.1f %10.1f %10.1f %10.1f %14s %6d %8d", name,
+                opsPerSecond, latencies.percentile(0.5) / 1e3, latencies.percentile(0.9) / 1e3,
+                latencies.percentile(0.99) / 1e3, latencies.percentile(0.999) / 1e3, latencies.max() / 1e3,
+                allocated < 0 ? "n/a" : String.valueOf(allocated / Math.max(1, ops)), gcs, gcMillis));
+    }
+
+    /**
+     * Helper function for measure: invoke an operation for one iteration's worth of time (at least once)
+     * @param operation - what to run
+     * @param invocation - number of the first invocation
+     * @param latencies - where to record each invocation's time, or null while warming up
+     * @return - number of the next invocation
+     */
+    private int iterate(Operation operation, int invocation, LatencyHistogram latencies) {
+        long spent = 0;
+        do {
+            operation.prepare(invocation);
+            long t = System.nanoTime();
+            sink = operation.run(invocation);
+            long elapsed = System.nanoTime() - t;
+            if (latencies != null) latencies.record(elapsed);
+            spent += elapsed;
+            invocation++;
+        } while (spent < iterationNanos);
+        return invocation;
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * @return - thread ID -> bytes it has allocated, for every live thread, or null if the JVM doesn't count them
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) return null;
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<Long, Long>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) allocated.put(ids[i], bytes[i]);
+        }
+        return allocated;
+    }
+
+    /**
+     * @param before - allocatedBytes() taken earlier
+     * @return - bytes allocated since then by threads still alive (worker threads that have exited are missed), or -1
+     * if the JVM doesn't count them
+     */
+    private static long allocatedSince(Map<Long, Long> before) {
+        Map<Long, Long> after = allocatedBytes();
+        if (before == null || after == null) return -1;
+        long total = 0;
+        for (Map.Entry<Long, Long> entry: after.entrySet()) {
+            total += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BaconBenchmark benchmark = new BaconBenchmark();
+        int[] scales = DEFAULT_SCALES;
+        for (int a = 0; a + 1 < args.length; a += 2) {
+            String value = args[a+1];
+            switch (args[a]) {
+                case "--scales": scales = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--only": benchmark.only = Arrays.asList(value.split(",")); break;
+                case "--warmup": benchmark.warmup = Integer.parseInt(value); break;
+                case "--iterations": benchmark.iterations = Integer.parseInt(value); break;
+                case "--time": benchmark.iterationNanos = Long.parseLong(value) * 1000000L; break;
+                default:
+                    System.err.println("Unknown option " + args[a]);
+                    return;
+            }
+        }
+        for (int scale: scales) {
+            benchmark.runScale(scale);
+        }
+    }
+}
@@ -1,7 +1,7 @@
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 
 /**
@@ -9,28 +9,132 @@ import java.util.*;
  * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
  */
 public class BaconGame {
-    private Map<Integer, String> actors;                //Map actorID -> actorName
-    private Map<Integer, String> movies;                //Map movieID -> movieName
-    private Graph<String, Set<String>> actorsToMovies;  //Graph: vertices = actor names, edges = Set{movies actors costar in}
+    private static final String[] INPUT_FILES = {"inputs/actors.txt", "inputs/movies.txt", "inputs/movie-actors.txt"};
+    private static final String SNAPSHOT_FILE = "inputs/actorsToMovies.snapshot"; //binary copy of the loaded inputs
+    public static final int EXACT_CLOSENESS_LIMIT = 50000;  //c estimates from pivots instead above this many actors
+    public static final int DEFAULT_PIVOTS = 256;           //first sample of pivots for the estimated c
+    public static final long PIVOT_SEED = 10;               //same pivots every run, so repeated c commands agree
+    private static final int MAX_SUGGESTIONS = 5;           //names suggested when p or u names no actor
+    private static final int MAX_MATCHES = 20;              //actors and movies listed by f
+    private static final String VERTEX_ORDER = System.getProperty("bacon.order", "bfs"); //VertexOrder the actors
+                                                            //are renumbered in once the credits are loaded
+
+    private CSRGraph.Builder graphBuilder;              //actors, movies and costar edges loaded so far, by ID and name,
+                                                        //packed into actorsToMovies
+    private volatile GraphState state;                  //actorsToMovies (vertices = actor names, edges = Set{movies actors
+                                                        //costar in}), its indexes and cached path trees; replaced whole
+                                                        //by every update
     private String centerOfUniverse;                    //name of current center of universe
+    private String[] inputFiles;                        //actors, movies and movie-actors files the game is loaded from
 
     public BaconGame() {
-        actors = new HashMap<Integer, String>();
-        movies = new HashMap<Integer, String>();
-        actorsToMovies = new AdjacencyMapGraph<>();
+        this(INPUT_FILES, SNAPSHOT_FILE);
+    }
+
+    /**
+     * load a game from other input files, such as generated ones
+     * @param inputFiles - actors, movies and movie-actors files, or null for an empty game to be filled with
+     *                   createActorsMap, createMoviesMap and createActorsToMovies
+     * @param snapshotFile - binary snapshot of the inputs, loaded instead if it is current and written otherwise; null
+     *                     to always read the input files
+     */
+    public BaconGame(String[] inputFiles, String snapshotFile) {
+        this.inputFiles = inputFiles;
+        graphBuilder = new CSRGraph.Builder();
+        setActorsToMovies(graphBuilder.build());
         centerOfUniverse = "Kevin Bacon";               //default centerOfUniverse to Kevin Bacon
 
-        createActorsMap("inputs/actors.txt");
-        createMoviesMap("inputs/movies.txt");
-        createActorsToMovies("inputs/movie-actors.txt");
+        if (inputFiles == null) return;
+        if (snapshotFile == null || !loadSnapshot(snapshotFile)) { //no snapshot, or the input files changed since it was written
+            createActorsMap(inputFiles[0]);
+            createMoviesMap(inputFiles[1]);
+            createActorsToMovies(inputFiles[2]);
+            if (snapshotFile != null) saveSnapshot(snapshotFile);
+        }
+    }
+
+    /**
+     * replace everything loaded with a binary snapshot, if the snapshot was written from the current input files
+     * @param fileName - snapshot file
+     * @return - true if the snapshot was current and loaded
+     */
+    public boolean loadSnapshot(String fileName) {
+        if (inputFiles == null) return false; //nothing to check the snapshot against
+        GraphSnapshot snapshot;
+        long start = Metrics.start();
+        try {
+            snapshot = GraphSnapshot.read(fileName, inputFiles, VERTEX_ORDER);
+        }
+        catch (IOException e) {
+            System.err.println("Cannot read snapshot, rebuilding it.\n" + e.getMessage());
+            return false;
+        }
+        if (snapshot == null) return false;
+        graphBuilder = snapshot.getBuilder();
+        state = snapshot.getState(); //indexes restored as written, not rebuilt
+        if (Metrics.ENABLED) Metrics.recordGraph(state.getGraph());
+        if (Metrics.ENABLED) Metrics.time("load.snapshot", start);
+        return true;
+    }
+
+    /**
+     * write everything loaded so far to a binary snapshot, stamped with the current input files' sizes and
+     * modification times; nothing is written unless the game has input files and they all exist
+     * @param fileName - snapshot file
+     */
+    public void saveSnapshot(String fileName) {
+        if (inputFiles == null) return;
+        for (String input: inputFiles) {
+            if (!new File(input).isFile()) return;
+        }
+        try {
+            GraphSnapshot.write(fileName, inputFiles, VERTEX_ORDER, graphBuilder, state);
+        }
+        catch (IOException e) {
+            System.err.println("Cannot write snapshot.\n" + e.getMessage());
+        }
     }
 
     /**
      * get the actorsToMovies graph instance variable
      * @return - actorsToMovies graph instance variable
      */
-    public Graph<String, Set<String>> getActorsToMovies() {
-        return actorsToMovies;
+    public CSRGraph getActorsToMovies() {
+        return state.getGraph();
+    }
+
+    /**
+     * get the index of actors by degree, built when actorsToMovies was loaded
+     * @return - degree index over actorsToMovies
+     */
+    public DegreeIndex getDegreeIndex() {
+        return state.getDegrees();
+    }
+
+    /**
+     * get the connected component labels, built when actorsToMovies was loaded
+     * @return - component index over actorsToMovies
+     */
+    public ComponentIndex getComponents() {
+        return state.getComponents();
+    }
+
+    /**
+     * get the current version of the graph with everything derived from it; it never changes, so a caller can keep
+     * querying it consistently while an update publishes the next version
+     * @return - current graph state
+     */
+    public GraphState getState() {
+        return state;
+    }
+
+    /**
+     * build the bipartite actor-movie form of everything loaded so far, in which costar edges are implicit; it can be
+     * searched with GraphLibrary.bfs like actorsToMovies, using memory proportional to the number of credits
+     * @return - bipartite graph of the loaded actors and movies
+     */
+    public BipartiteGraph createCreditGraph() {
+        return graphBuilder.buildBipartite();
     }
 
     /**
@@ -46,78 +150,215 @@ public class BaconGame {
      * @param newCenter - name of the new center of the game universe
      */
     public void setCenterOfUniverse(String newCenter) {
+        if (!newCenter.equals(centerOfUniverse)) {
+            state.forgetPathTree(centerOfUniverse); //old center's tree is no longer needed
+        }
         centerOfUniverse = newCenter;
     }
 
     /**
-     * put all the key/value pairs in the actors map
-     * @param fileName - file of actor ID's and actor names
+     * get the shortest path tree rooted at a center, only running BFS if no tree for that center has been cached
+     * (or kept up to date through updates) since the graph was loaded
+     * @param center - name of the actor at the root of the tree
+     * @return - shortest path tree from center
      */
-    public void createActorsMap(String fileName) {
-        BufferedReader input;
+    public ShortestPathResult getPathTree(String center) {
+        return state.getPathTree(center);
+    }
+
+    /**
+     * get the shortest path tree rooted at the current center of the universe
+     * @return - shortest path tree from the current center of the universe
+     */
+    public ShortestPathResult getCenterTree() {
+        return getPathTree(centerOfUniverse);
+    }
+
+    /**
+     * find a shortest path from the current center of the universe to an actor, reading it off the center's cached
+     * path tree when there is one and otherwise running a bidirectional BFS between just the two actors
+     * @param actor - name of the actor at the end of the path
+     * @return - list of actor names from the center to actor, or an empty list if there is no path
+     */
+    public List<String> findPath(String actor) {
+        GraphState current = state;
+        ShortestPathResult tree = current.cachedPathTree(centerOfUniverse);
+        if (tree != null) {
+            return tree.pathTo(actor);
+        }
+        return GraphLibrary.shortestPath(current.getGraph(), centerOfUniverse, actor);
+    }
+
+    /**
+     * add an actor with no credits yet
+     * @param actorId - actor ID
+     * @param name - actor name
+     */
+    public synchronized void addActor(int actorId, String name) {
+        graphBuilder.addVertex(actorId, name);
+        state = state.added(graphBuilder.patch(state.getGraph()), Collections.<int[]>emptyList());
+    }
+
+    /**
+     * add a movie with its cast, or more of the cast of a movie already added; actors who haven't been added are
+     * skipped, as when loading
+     * @param movieId - movie ID
+     * @param name - movie name (ignored if the movie was already added)
+     * @param actorIds - actor IDs of the cast
+     */
+    public synchronized void addMovie(int movieId, String name, int[] actorIds) {
+        Map<Integer, CSRGraph.IntList> credits = new HashMap<Integer, CSRGraph.IntList>();
+        graphBuilder.addMovie(movieId, name); //keeps the name it has if the movie was already added
+        CSRGraph.IntList cast = new CSRGraph.IntList();
+        for (int actorId: actorIds) {
+            int actorIndex = graphBuilder.actorIndexOf(actorId);
+            if (actorIndex >= 0) cast.add(actorIndex);
+        }
+        credits.put(movieId, cast);
+        addCredits(credits);
+    }
 
-        try{
-            input = new BufferedReader(new FileReader(fileName));
+    /**
+     * add the credits of a movie-actors delta file (the "movieID|actorID" lines appended since the last load), with
+     * one patch of the graph for the whole file. The update lives in memory only; the snapshot is rewritten when the
+     * game is next started from input files that include it.
+     * @param fileName - file of movie ID's and the ID's of actors who appeared in them
+     */
+    public synchronized void applyCredits(String fileName) {
+        Map<Integer, CSRGraph.IntList> credits = new LinkedHashMap<Integer, CSRGraph.IntList>();
+        try {
+            PipeFileReader.LoadStats stats = PipeFileReader.readIdPairs(fileName, (movieId, actorId) -> {
+                int actorIndex = graphBuilder.actorIndexOf(actorId);
+                if (actorIndex >= 0) credits.computeIfAbsent(movieId, m -> new CSRGraph.IntList()).add(actorIndex);
+            });
+            reportMalformed(fileName, stats);
         }
         catch (FileNotFoundException e) {
             System.err.println("Cannot open file. \n" + e.getMessage());
             return;
         }
-
-        try{
-            String line;
-            while ((line=input.readLine()) != null) {
-                String[] s = line.split("\\|");
-                actors.put(Integer.valueOf(s[0]), s[1]); //add into actors map
-                actorsToMovies.insertVertex(s[1]); //add in all the vertices into actorsToMovies
-            }
-        }
         catch (IOException e) {
             System.err.println("IO error while reading.\n" + e.getMessage());
         }
-        finally {
-            try {
-                input.close();
-            }
-            catch (IOException e) {
-                System.err.println("Cannot close file.\n" + e.getMessage());
-            }
+        addCredits(credits);
+    }
+
+    /**
+     * Helper function for addMovie and applyCredits: add actors to movies' casts and publish the next state, with
+     * component labels merged and cached trees repaired instead of recomputed
+     * @param credits - movie ID -> vertex indices of the actors to add to it
+     */
+    private void addCredits(Map<Integer, CSRGraph.IntList> credits) {
+        long start = Metrics.start();
+        List<int[]> casts = new ArrayList<int[]>();
+        for (Map.Entry<Integer, CSRGraph.IntList> entry: credits.entrySet()) {
+            if (entry.getValue().size() == 0) continue;
+            int movie = graphBuilder.addMovie(entry.getKey(), null); //a movie missing from movies.txt has no name
+            casts.add(graphBuilder.addCredits(movie, entry.getValue()).toArray());
         }
+        if (casts.isEmpty()) return;
+        state = state.added(graphBuilder.patch(state.getGraph()), casts);
+        if (Metrics.ENABLED) Metrics.time("update.add", start);
     }
 
     /**
-     * put all the key/value pairs in the movies map
-     * @param fileName - file of movie ID's and movie names
+     * retract an actor's credit for a movie; cached trees that didn't depend on an edge the actor loses are kept
+     * @param movieId - movie ID
+     * @param actorId - actor ID
+     * @return - true if the actor was credited in the movie
      */
-    public void createMoviesMap(String fileName) {
-        BufferedReader input;
+    public synchronized boolean retractCredit(int movieId, int actorId) {
+        int movie = graphBuilder.movieIndexOf(movieId), actor = graphBuilder.actorIndexOf(actorId);
+        if (movie < 0 || actor < 0 || !graphBuilder.removeCredit(movie, actor)) return false;
+        long start = Metrics.start();
+        state = state.retracted(graphBuilder.patch(state.getGraph()), actor, graphBuilder.castOf(movie).toArray());
+        if (Metrics.ENABLED) Metrics.time("update.retract", start);
+        return true;
+    }
 
-        try{
-            input = new BufferedReader(new FileReader(fileName));
+    /**
+     * repack actorsToMovies from everything loaded so far, rebuilding every index and dropping cached path trees
+     */
+    private void graphChanged() {
+        long start = Metrics.start();
+        CSRGraph graph = graphBuilder.build();
+        if (Metrics.ENABLED) Metrics.time("load.pack", start);
+        start = Metrics.start();
+        state = state.repacked(graph); //the builder only grows, so the name indexes carry over
+        if (Metrics.ENABLED) {
+            Metrics.time("load.index", start);
+            Metrics.recordGraph(graph);
+        }
+    }
+
+    /**
+     * repack actorsToMovies and renumber its actors in VERTEX_ORDER, so that costars sit near each other in the
+     * arrays every search reads; the snapshot keeps the new numbering, and actors added later go at the end
+     */
+    private void graphReordered() {
+        long start = Metrics.start();
+        CSRGraph graph = graphBuilder.build();
+        int[] newIndex = VertexOrder.of(VERTEX_ORDER, graph);
+        if (newIndex != null) graph = graphBuilder.reorder(newIndex, graph);
+        if (Metrics.ENABLED) Metrics.time("load.order", start);
+        setActorsToMovies(graph); //every vertex index changed, so nothing carries over
+    }
+
+    /**
+     * install a newly packed graph, rebuilding the indexes derived from it and retiring cached path trees
+     * @param graph - the new actorsToMovies graph
+     */
+    private void setActorsToMovies(CSRGraph graph) {
+        long start = Metrics.start();
+        state = GraphState.of(graph);
+        if (Metrics.ENABLED) {
+            Metrics.time("load.index", start);
+            Metrics.recordGraph(graph);
+        }
+    }
+
+    /**
+     * add every actor of an actors file to the graph builder
+     * @param fileName - file of actor ID's and actor names
+     */
+    public void createActorsMap(String fileName) {
+        long start = Metrics.start();
+        try {
+            PipeFileReader.LoadStats stats = PipeFileReader.readIdNames(fileName, (id, name) -> {
+                graphBuilder.addVertex(id, name); //add in all the vertices into actorsToMovies
+            });
+            reportMalformed(fileName, stats);
+            if (Metrics.ENABLED) Metrics.recordLoad("actors", stats, start);
         }
         catch (FileNotFoundException e) {
             System.err.println("Cannot open file. \n" + e.getMessage());
             return;
         }
+        catch (IOException e) {
+            System.err.println("IO error while reading.\n" + e.getMessage());
+        }
+        graphChanged();
+    }
 
-        try{
-            String line;
-            while ((line=input.readLine()) != null) {
-                String[] s = line.split("\\|");
-                movies.put(Integer.valueOf(s[0]), s[1]); //add values the movies map
-            }
+    /**
+     * add every movie of a movies file to the graph builder
+     * @param fileName - file of movie ID's and movie names
+     */
+    public void createMoviesMap(String fileName) {
+        long start = Metrics.start();
+        try {
+            PipeFileReader.LoadStats stats = PipeFileReader.readIdNames(fileName, (id, name) -> {
+                graphBuilder.addMovie(id, name); //add the movie with its name, before any cast refers to it
+            });
+            reportMalformed(fileName, stats);
+            if (Metrics.ENABLED) Metrics.recordLoad("movies", stats, start);
+        }
+        catch (FileNotFoundException e) {
+            System.err.println("Cannot open file. \n" + e.getMessage());
         }
         catch (IOException e) {
             System.err.println("IO error while reading.\n" + e.getMessage());
         }
-        finally {
-            try {
-                input.close();
-            }
-            catch (IOException e) {
-                System.err.println("Cannot close file.\n" + e.getMessage());
-            }
-        }
     }
 
     /**
@@ -125,61 +366,61 @@ public class BaconGame {
      * @param fileName - file with actor ID's and the ID's of the movies they costar in
      */
     public void createActorsToMovies(String fileName) {
-        BufferedReader input;
-
-        try{
-            input = new BufferedReader(new FileReader(fileName));
+        CastCollector casts = new CastCollector();
+        long start = Metrics.start();
+        try {
+            PipeFileReader.LoadStats stats = PipeFileReader.readIdPairs(fileName, casts);
+            casts.flush(); //last movie in the file
+            reportMalformed(fileName, stats);
+            if (Metrics.ENABLED) Metrics.recordLoad("credits", stats, start);
         }
         catch (FileNotFoundException e) {
             System.err.println("Cannot open file. \n" + e.getMessage());
             return;
         }
-
-        try{
-            String line;
-            int thisMovieId;
-            ArrayList<String> actorsInSameMovie;
-            line = input.readLine();
-            while (true) {
-                actorsInSameMovie = new ArrayList<String>(); //create empty arrayList for the actors int eh same movie
-                if (line == null) break; //if this is the last line, exit while loop
-
-                thisMovieId = Integer.parseInt(line.split("\\|")[0]); //get this movie's ID number
-                while (Integer.parseInt(line.split("\\|")[0]) == thisMovieId) { //while the line we are on is of the movie - exit when we've moved onto another movie
-                    int actorIdInMovie = Integer.parseInt(line.split("\\|")[1]); //get the actor Id
-                    actorsInSameMovie.add(actors.get(actorIdInMovie)); //add the actor into teh arrayList
-                    line = input.readLine(); //move onto the next line
-                    if (line == null) break;
-                }
-
-                for (int i = 0; i < actorsInSameMovie.size(); i++) {
-                    for (int j = 0; j < actorsInSameMovie.size(); j++) { //loop through every possible combination
-                        if (i != j) { //don't add an edge between an actor and themself
-                            if (!actorsToMovies.hasEdge(actorsInSameMovie.get(i), actorsInSameMovie.get(j))){
-                                Set<String> temp = new HashSet<String>();   //create new set to use as the edge
-                                temp.add(movies.get(thisMovieId));     //add this movie name into the edge set
-                                actorsToMovies.insertUndirected(actorsInSameMovie.get(i), actorsInSameMovie.get(j), temp);
-                            }
-                            else { //if that edge already exists
-                                actorsToMovies.getLabel(actorsInSameMovie.get(i), actorsInSameMovie.get(j)).add(movies.get(thisMovieId));
-                                actorsToMovies.getLabel(actorsInSameMovie.get(j), actorsInSameMovie.get(i)).add(movies.get(thisMovieId)); //directed edge behind the scenes, so update both
-                            }
-                        }
-                    }
-                }
-            }
-
-        }
         catch (IOException e) {
             System.err.println("IO error while reading.\n" + e.getMessage());
         }
-        finally {
-            try {
-                input.close();
-            }
-            catch (IOException e) {
-                System.err.println("Cannot close file.\n" + e.getMessage());
+        graphReordered();
+    }
+
+    /**
+     * Gathers the consecutive "movieID|actorID" lines of each movie into its cast, and adds the cast to the graph
+     * once the movie's last line has been read
+     */
+    private class CastCollector implements PipeFileReader.IdPairHandler {
+        private int thisMovieId;                                    //movie whose lines are being read
+        private CSRGraph.IntList actorsInSameMovie = new CSRGraph.IntList(); //vertex indices of its cast so far
+
+        public void accept(int movieId, int actorId) {
+            if (movieId != thisMovieId) { //moved onto another movie
+                flush();
+                thisMovieId = movieId;
             }
+            int actorIndex = graphBuilder.actorIndexOf(actorId);
+            if (actorIndex >= 0) actorsInSameMovie.add(actorIndex);
+        }
+
+        /**
+         * hand the current movie's cast to the graph builder and start a new cast
+         */
+        void flush() {
+            if (actorsInSameMovie.size() == 0) return;
+            int movie = graphBuilder.addMovie(thisMovieId, null); //dense index of this movie, named if movies.txt has it
+            graphBuilder.addCast(movie, actorsInSameMovie); //costar edges are generated from the cast when packed
+            actorsInSameMovie.clear();
+        }
+    }
+
+    /**
+     * print how many lines of an input file had to be skipped, if any
+     * @param fileName - file that was read
+     * @param stats - line counts from reading it
+     */
+    private static void reportMalformed(String fileName, PipeFileReader.LoadStats stats) {
+        if (stats.getMalformed() > 0) {
+            System.err.println("Skipped " + stats.getMalformed() + " malformed line(s) of " + stats.getLines() + " in "
+                    + fileName);
         }
     }
 
@@ -188,20 +429,254 @@ public class BaconGame {
      * @return - instructions for the Kevin Bacon game
      */
     public static String getInstructions() {
-        String s = "The commands are as such:\nc <#>: list top (positive number) or bottom (negative) <#> centers of " +
-                "the universe, sorted by average separation\nd <low> <high>: list actors sorted by degree, with degree" +
-                " between low and high\ni: list actors with infinite separation from the current center\np <name>: " +
+        String s = "The commands are as such:\na <file>: add the credits of a movie-actors delta file\nc <#> [pivots]: list top (positive number) or bottom (negative) <#> centers of " +
+                "the universe, sorted by average separation (add a number of pivots to estimate instead)\nd <low> <high>: list actors sorted by degree, with degree" +
+                " between low and high\nf <prefix>: list actors and movies whose names start with <prefix>\ni: list actors with infinite separation from the current center\np <name>: " +
                 "find path from <name> to current center of the universe\ns <low> <high>: list actors sorted by " +
                 "non-infinite separation from the current center, with separation between low and high\nu <name>: " +
-                "make <name> the center of the universe\nq: quit game";
+                "make <name> the center of the universe\nw <#> <name>: find the path from <name> to the current center with the " +
+                "strongest ties, through costars with at least <#> movies together\ny <from> <to> <name>: find path " +
+                "from <name> to current center using only movies released from <from> to <to>\nq: quit game";
         return s;
     }
 
+    /**
+     * describe a path found for the p command, one line per step from the actor back to the center
+     * @param graph - graph the path was found in
+     * @param center - name of the center of the universe
+     * @param end - name of the actor at the end of the path
+     * @param path - actor names from the center to end, or an empty list if there is no path
+     * @return - the lines to print
+     */
+    public static String describePath(Graph<String, Set<String>> graph, String center, String end, List<String> path) {
+        if (path.size() == 0) {
+            return end + "'s " + center + " number is infinite; there is no path\n";
+        }
+        StringBuilder s = new StringBuilder(end + "'s " + center + " number is " + (path.size()-1) + "\n");
+        for (int i = path.size()-1; i > 0; i--) { //loop through in reverse order (ending with the centerOfUniverse)
+            s.append(path.get(i) + " appeared in " + graph.getLabel(path.get(i), path.get(i-1)) + " with " + path.get(i-1) + "\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * print the path from an actor to the current center over the edges a rule allows, for the w and y commands
+     * @param game - the game to search
+     * @param typed - actor name as typed
+     * @param rule - which edges may be used and what they cost
+     * @param out - where to print
+     */
+    private static void printConstrainedPath(BaconGame game, String typed, EdgeRule rule, PrintStream out) {
+        GraphState state = game.getState();
+        CSRGraph graph = state.getGraph();
+        String end = resolveActor(graph, state.getActorNames(), typed);
+        if (end == null) {
+            out.print(describeUnknownActor(typed, suggestActors(graph, state.getActorNames(), typed)));
+            return;
+        }
+        int center = graph.indexOf(game.getCenterOfUniverse());
+        int[] path = center < 0 ? new int[0] : GraphLibrary.constrainedPath(graph, graph.indexOf(end), center, rule);
+        out.print(describeConstrainedPath(graph, rule, game.getCenterOfUniverse(), end, path));
+    }
+
+    /**
+     * describe a path found over the edges a rule allows, one line per step from the actor to the center
+     * @param graph - graph the path was found in
+     * @param rule - rule the path follows
+     * @param center - name of the center of the universe
+     * @param end - name of the actor at the start of the path
+     * @param path - vertex indices from end to the center, or an empty array if the rule allows no path
+     * @return - the lines to print
+     */
+    public static String describeConstrainedPath(CSRGraph graph, EdgeRule rule, String center, String end, int[] path) {
+        if (path.length == 0) {
+            return end + "'s " + center + " number " + rule + " is infinite; there is no path\n";
+        }
+        StringBuilder s = new StringBuilder(end + "'s " + center + " number " + rule + " is " + (path.length-1));
+        if (rule.isWeighted()) s.append(", at a cost of ").append(String.format("%.3f", rule.cost(graph, path)));
+        s.append('\n');
+        for (int i = 0; i < path.length-1; i++) {
+            s.append(graph.nameOf(path[i]) + " appeared in " + rule.movies(graph, graph.edgeIndex(path[i], path[i+1]))
+                    + " with " + graph.nameOf(path[i+1]) + "\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * @param graph - graph to look in
+     * @param names - actor name index of graph
+     * @param typed - actor name as typed
+     * @return - the actor's name as the graph has it, matching exactly or else as the only match ignoring case, or
+     * null if there is no such actor
+     */
+    public static String resolveActor(CSRGraph graph, NameIndex names, String typed) {
+        int v = names.resolve(typed, graph.indexOf(typed));
+        return v < 0 ? null : graph.nameOf(v);
+    }
+
+    /**
+     * @param graph - graph to look in
+     * @param names - actor name index of graph
+     * @param typed - actor name as typed, matching no actor
+     * @return - names of the actors that may have been meant, closest first
+     */
+    public static List<String> suggestActors(CSRGraph graph, NameIndex names, String typed) {
+        List<String> suggestions = new ArrayList<String>();
+        for (int v: names.suggestions(typed, MAX_SUGGESTIONS)) {
+            suggestions.add(graph.nameOf(v));
+        }
+        return suggestions;
+    }
+
+    /**
+     * describe a name typed for p or u that matches no actor
+     * @param typed - name as typed
+     * @param suggestions - names that may have been meant
+     * @return - the lines to print
+     */
+    public static String describeUnknownActor(String typed, List<String> suggestions) {
+        if (suggestions.isEmpty()) return "There is no actor named " + typed + "\n";
+        StringBuilder s = new StringBuilder("There is no actor named " + typed + "; did you mean:\n");
+        for (String name: suggestions) {
+            s.append(name).append('\n');
+        }
+        return s.toString();
+    }
+
+    /**
+     * describe a new center of the universe for the u command
+     * @param center - name of the new center
+     * @param numConnected - number of other actors the center can reach
+     * @param totalNum - number of other actors in the graph
+     * @param avSeparation - average separation of the center from the actors it can reach
+     * @return - the line to print
+     */
+    public static String describeCenter(String center, int numConnected, int totalNum, double avSeparation) {
+        return "The new center of the Universe is " + center + ", connected to " + numConnected + "/" + totalNum
+                + " actors with an average separation of " + avSeparation;
+    }
+
+    /**
+     * print each chosen center with its average separation, best first
+     * @param graph - graph the centers were chosen from
+     * @param centers - the chosen centers
+     * @param out - where to print
+     */
+    private static void printCenters(CSRGraph graph, TopK centers, PrintStream out) {
+        int[] vertices = centers.vertices();
+        double[] separations = centers.scores();
+        for (int i = 0; i < vertices.length; i++) {
+            out.println(graph.nameOf(vertices[i]) + " has an average separation of " + separations[i]);
+        }
+    }
+
+    /**
+     * list the top (positive number) or bottom (negative) <#> centers of the Kevin Bacon universe, sorted by average
+     * separation, for the c command
+     * @param graph - graph whose actors are ranked
+     * @param components - component labels of graph
+     * @param number - number of centers to list, positive for the top and negative for the bottom
+     * @param pivots - number of pivots to estimate from, or -1 for exact separations unless graph has more than
+     *               EXACT_CLOSENESS_LIMIT actors
+     * @param out - where to print
+     */
+    public static void listCenters(CSRGraph graph, ComponentIndex components, int number, int pivots,
+                                   PrintStream out) {
+        int posNumber = Math.abs(number);
+        if (number != 0 && (pivots >= 0 || graph.numVertices() > EXACT_CLOSENESS_LIMIT)) {
+            //too many actors for a BFS from each one, so estimate from a sample of pivots instead
+            listEstimatedCenters(graph, components, number, pivots >= 0 ? pivots : DEFAULT_PIVOTS, out);
+            return;
+        }
+        int[] universe = components.members(components.componentOf("Kevin Bacon")); //only actors in the Kevin Bacon universe
+        int threads = GraphLibrary.defaultThreads();
+
+        //take bottom or top <#> elements
+        if (number < 0) { //if asking for the bottom <#> centers of universe
+            double[] separations = GraphLibrary.averageSeparations(graph, universe, threads);
+            TopK bottom = TopK.select(universe, separations, posNumber, false);
+            out.println("The bottom " + posNumber + " centers of universe are:");
+            printCenters(graph, bottom, out);
+        }
+        else if (number > 0) { //if asking for top <#> centers of universe
+            TopK top = GraphLibrary.closestCenters(graph, components, universe, posNumber, threads); //prunes hopeless searches
+            out.println("The top " + posNumber + " centers of universe are:");
+            printCenters(graph, top, out);
+        }
+        else {
+            out.println("Your input was 0. Nothing can be calculated");
+        }
+    }
+
+    /**
+     * list the top (positive number) or bottom (negative) <#> centers of the Kevin Bacon universe by estimated average
+     * separation, doubling the sample of pivots until the listed centers' confidence intervals separate from everyone
+     * else's
+     * @param graph - graph whose actors are ranked
+     * @param components - component labels of graph
+     * @param number - number of centers to list, positive for the top and negative for the bottom
+     * @param pivots - number of pivots to sample first
+     * @param out - where to print
+     */
+    private static void listEstimatedCenters(CSRGraph graph, ComponentIndex components, int number, int pivots,
+                                             PrintStream out) {
+        boolean top = number > 0;
+        int posNumber = Math.abs(number);
+        int threads = GraphLibrary.defaultThreads();
+        ClosenessEstimator estimator = new ClosenessEstimator(components, components.componentOf("Kevin Bacon"),
+                ClosenessEstimator.DEFAULT_CONFIDENCE, PIVOT_SEED);
+        int[] ranked = estimator.separatedRanking(posNumber, top, pivots, threads, () ->
+                out.println("Estimated from " + estimator.sampleCount() + "/" + estimator.size() + " actors, the "
+                        + (top ? "top " : "bottom ") + posNumber + " are not yet separated; sampling more"));
+
+        out.println("The " + (top ? "top " : "bottom ") + posNumber + " centers of universe are (estimated from "
+                + estimator.sampleCount() + "/" + estimator.size() + " actors, " + Math.round(ClosenessEstimator.DEFAULT_CONFIDENCE*100)
+                + "% confidence):");
+        for (int v: ranked) {
+            out.println(graph.nameOf(v) + " has an average separation of about "
+                    + String.format("%.4f (%.4f to %.4f)", estimator.estimate(v), estimator.lowerBound(v), estimator.upperBound(v)));
+        }
+    }
+
+    /**
+     * describe the actors and movies whose names start with a prefix, for the f command
+     * @param state - state to look in
+     * @param prefix - start of the names, in any case
+     * @return - the lines to print
+     */
+    public static String describeMatches(GraphState state, String prefix) {
+        StringBuilder s = new StringBuilder("Actors starting with " + prefix + ":\n");
+        for (int v: state.getActorNames().withPrefix(prefix, MAX_MATCHES)) {
+            s.append(state.getGraph().nameOf(v)).append('\n');
+        }
+        s.append("Movies starting with ").append(prefix).append(":\n");
+        for (int m: state.getMovieNames().withPrefix(prefix, MAX_MATCHES)) {
+            s.append(state.getGraph().movieName(m)).append('\n');
+        }
+        return s.toString();
+    }
+
     /**
      * test case 1 - the sample test graph provided
      */
     public static void test1() {
         System.out.println("Test case 1: Hardcode the vertices of the test graph and test GraphLibrary");
+        Graph<String, Set<String>> g = createTestGraph();
+
+        Graph<String, Set<String>> baconTestTree = GraphLibrary.bfs(g, "Kevin Bacon");
+        System.out.println(baconTestTree);
+        List<String> pathBaconDart = GraphLibrary.getPath(baconTestTree, "Dartmouth (Earl thereof)");
+        System.out.println(pathBaconDart);
+        System.out.println(GraphLibrary.missingVertices(g, baconTestTree));
+        double avSeparation = GraphLibrary.averageSeparation(baconTestTree, "Kevin Bacon");
+        System.out.println(avSeparation);
+    }
+
+    /**
+     * build the sample test graph provided
+     * @return - the sample test graph
+     */
+    public static Graph<String, Set<String>> createTestGraph() {
         Graph<String, Set<String>> g = new AdjacencyMapGraph<String, Set<String>>();
         g.insertVertex("Kevin Bacon");
         g.insertVertex("Alice");
@@ -231,14 +706,7 @@ public class BaconGame {
         Set<String> s6 = new HashSet<>();
         s6.add("F Movie");
         g.insertUndirected("Nobody", "Nobody's friend", s6);
-
-        Graph<String, Set<String>> baconTestTree = GraphLibrary.bfs(g, "Kevin Bacon");
-        System.out.println(baconTestTree);
-        List<String> pathBaconDart = GraphLibrary.getPath(baconTestTree, "Dartmouth (Earl thereof)");
-        System.out.println(pathBaconDart);
-        System.out.println(GraphLibrary.missingVertices(g, baconTestTree));
-        double avSeparation = GraphLibrary.averageSeparation(baconTestTree, "Kevin Bacon");
-        System.out.println(avSeparation);
+        return g;
     }
 
     /**
@@ -280,163 +748,233 @@ public class BaconGame {
         System.out.println(avSeparation);
     }
 
-    public static void main(String[] args) {
-        BaconGame game = new BaconGame();
-        Scanner scan = new Scanner(System.in);
-        System.out.println("Welcome to the Kevin Bacon game!");
-        System.out.println("Note: The center of the universe is autoset to be Kevin Bacon");
+    /**
+     * test case 4 - the sample test graph packed into a CSRGraph should give the same answers as test case 1
+     */
+    public static void test4() {
+        System.out.println("Test case 4: pack the test graph into a CSRGraph and test GraphLibrary on it");
+        Graph<String, Set<String>> g = CSRGraph.copyOf(createTestGraph());
+        System.out.println(g);
+        System.out.println(g.getLabel("Kevin Bacon", "Alice"));
 
-        while (true) {
-            System.out.println("\n" + BaconGame.getInstructions());
-            System.out.println("\nWrite your command here:");
+        Graph<String, Set<String>> baconTestTree = GraphLibrary.bfs(g, "Kevin Bacon");
+        List<String> pathBaconDart = GraphLibrary.getPath(baconTestTree, "Dartmouth (Earl thereof)");
+        System.out.println(pathBaconDart);
+        System.out.println(GraphLibrary.missingVertices(g, baconTestTree));
+        double avSeparation = GraphLibrary.averageSeparation(baconTestTree, "Kevin Bacon");
+        System.out.println(avSeparation);
+    }
 
-            String line = scan.nextLine();
-            char command = line.charAt(0);
-
-            //list top (positive number) or bottom (negative) <#> centers of the universe, sorted by average separation
-            if (command == 'c') {
-                int number = Integer.parseInt(line.split(" ")[1]);
-                int posNumber = Math.abs(number);
-                Map<String, Double> avSepMap = GraphLibrary.avSepMap(game.getActorsToMovies()); //map actor -> average Separation
-                //create sorted increasing list of best centers of universe
-                ArrayList<String> sortedVertices = new ArrayList<String>();
-                for (String vertex: avSepMap.keySet()) { //loop through every actor in avSepMap
-                    if (GraphLibrary.bfs(game.getActorsToMovies(), "Kevin Bacon").hasVertex(vertex)) { //only include actors who are in the Kevin Bacon universe
-                        sortedVertices.add(vertex);
-                    }
-                }
-                sortedVertices.sort((e1, e2) -> Double.compare(avSepMap.get(e2), avSepMap.get(e1)));
-
-                //take bottom or top <#> elements
-                if (number < 0) { //if asking for the bottom <#> centers of universe
-                    System.out.println("The bottom " + posNumber + " centers of universe are:");
-                    for (int i = 0; i < posNumber; i++) {
-                        System.out.println(sortedVertices.get(i) + " has an average separation of " +
-                                avSepMap.get(sortedVertices.get(i)));
-                    }
-                }
-                else if (number > 0) { //if asking for top <#> centers of universe
-                    System.out.println("The top " + posNumber + " centers of universe are:");
-                    for (int i = sortedVertices.size()-1; i > sortedVertices.size()-posNumber-1; i--) {
-                        System.out.println(sortedVertices.get(i) + " has an average separation of " +
-                                avSepMap.get(sortedVertices.get(i)));
-                    }
-                }
-                else {
-                    System.out.println("Your input was 0. Nothing can be calculated");
-                }
+    /**
+     * test case 5 - average separations estimated from pivots on the sample test graph should bracket the exact ones
+     * from GraphLibrary.avSepMap, and match them once every actor in Kevin Bacon's universe has been a pivot
+     */
+    public static void test5() {
+        System.out.println("Test case 5: estimate average separations from pivots and compare with avSepMap");
+        CSRGraph g = CSRGraph.copyOf(createTestGraph());
+        Map<String, Double> exact = GraphLibrary.avSepMap(g);
+        ComponentIndex components = new ComponentIndex(g, 1);
+        ClosenessEstimator estimator = new ClosenessEstimator(components, components.componentOf("Kevin Bacon"),
+                ClosenessEstimator.DEFAULT_CONFIDENCE, PIVOT_SEED);
+        for (int pivots: new int[] {2, 3}) { //2 of the 5 actors, then all of them
+            estimator.refine(pivots, 1);
+            System.out.println("Pivots: " + estimator.sampleCount() + "/" + estimator.size() + ", exact: " + estimator.isExact());
+            for (int i = 0; i < estimator.size(); i++) {
+                int v = estimator.memberAt(i);
+                double actual = exact.get(g.nameOf(v));
+                System.out.println(g.nameOf(v) + ": exact " + actual + ", estimate " + estimator.estimate(v) + " in ["
+                        + estimator.lowerBound(v) + ", " + estimator.upperBound(v) + "], brackets exact: "
+                        + (estimator.lowerBound(v) <= actual && actual <= estimator.upperBound(v)));
             }
+        }
+    }
+
+    /**
+     * run one command of the game, as typed at the prompt
+     * @param game - the game to run it against
+     * @param line - the command and its arguments
+     * @param out - where to print the answer
+     * @return - false if the command was q, true otherwise
+     */
+    public static boolean runCommand(BaconGame game, String line, PrintStream out) {
+        long start = Metrics.start();
+        try {
+            return execute(game, line, out);
+        }
+        finally {
+            if (Metrics.ENABLED && !line.isEmpty()) Metrics.time("command." + line.charAt(0), start);
+        }
+    }
 
+    /**
+     * Helper function for runCommand: run the command
+     * @param game - the game to run it against
+     * @param line - the command and its arguments
+     * @param out - where to print the answer
+     * @return - false if the command was q, true otherwise
+     */
+    private static boolean execute(BaconGame game, String line, PrintStream out) {
+        char command = line.charAt(0);
+
+        //add the credits of a movie-actors delta file, keeping cached trees and component labels up to date
+        if (command == 'a') {
+            game.applyCredits(line.substring(2));
+            out.println("The graph now has " + game.getActorsToMovies().numVertices() + " actors and "
+                    + game.getActorsToMovies().numEdges() + " costar edges");
+        }
 
-            //list actors sorted by degree, with degree between low and high
-            else if (command == 'd') {
-                int low = Integer.parseInt(line.split(" ")[1]);
-                int high = Integer.parseInt(line.split(" ")[2]);
-                class inDegreeComparator implements Comparator<String> {
-                    public int compare(String v1, String v2) { //comparator using the actor's degree's
-                        return game.getActorsToMovies().inDegree(v1) - game.getActorsToMovies().inDegree(v2);
-                    }
-                }
-                Comparator<String> inDegCompare = new inDegreeComparator();
-                ArrayList<String> sortedVertices = new ArrayList<String>();
-                for (String vertex: game.getActorsToMovies().vertices()) {
-                    if (game.getActorsToMovies().inDegree(vertex) >= low && game.getActorsToMovies().inDegree(vertex) <= high) {
-                        sortedVertices.add(vertex); //add all vertices with degrees between low and high
-                    }
-                }
-                sortedVertices.sort(inDegCompare);
-                for (int i = 0; i < sortedVertices.size(); i++) {
-                    System.out.println(sortedVertices.get(i) + " has a degree of " + game.getActorsToMovies().inDegree(sortedVertices.get(i)));
-                }
+
+        //list top (positive number) or bottom (negative) <#> centers of the universe, sorted by average separation
+        else if (command == 'c') {
+            String[] tokens = line.split(" ");
+            GraphState state = game.getState();
+            listCenters(state.getGraph(), state.getComponents(), Integer.parseInt(tokens[1]),
+                    tokens.length > 2 ? Integer.parseInt(tokens[2]) : -1, out);
+        }
+
+
+        //list actors sorted by degree, with degree between low and high
+        else if (command == 'd') {
+            int low = Integer.parseInt(line.split(" ")[1]);
+            int high = Integer.parseInt(line.split(" ")[2]);
+            DegreeIndex degrees = game.getDegreeIndex(); //already sorted by degree, so the range is one slice
+            for (int i = degrees.rangeStart(low); i < degrees.rangeEnd(high); i++) {
+                out.println(game.getActorsToMovies().nameOf(degrees.vertexAt(i)) + " has a degree of "
+                        + degrees.degreeAt(i));
             }
+        }
 
 
-            //list actors with infinite separation from the current center
-            else if (command == 'i') {
-                Set<String> actorsAtInfinite = GraphLibrary.missingVertices(game.getActorsToMovies(),
-                        GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()));
-                System.out.println("The actors with infinite separation from the current center, " + game.getCenterOfUniverse() + ", are:");
-                for (String actor: actorsAtInfinite) {
-                    System.out.println(actor);
+        //list actors with infinite separation from the current center
+        else if (command == 'i') {
+            ComponentIndex components = game.getComponents();
+            int centerComponent = components.componentOf(game.getCenterOfUniverse());
+            out.println("The actors with infinite separation from the current center, " + game.getCenterOfUniverse() + ", are:");
+            for (int v = 0; v < game.getActorsToMovies().numVertices(); v++) { //everyone outside the center's component
+                if (components.componentOf(v) != centerComponent) {
+                    out.println(game.getActorsToMovies().nameOf(v));
                 }
             }
+        }
 
 
-            //find path from <name> to current center of the universe
-            else if (command == 'p') {
-                String end = line.substring(2);
-                List<String> path = GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()), end);
-                if (path.size() == 0) {
-                    System.out.println(end + "'s " + game.getCenterOfUniverse() + " number is infinite; there is no path");
-                }
-                else {
-                    System.out.println(end + "'s " + game.getCenterOfUniverse() + " number is " + (path.size()-1));
-                    for (int i = path.size()-1; i > 0; i--) { //loop through in reverse order (ending with the centerOfUniverse)
-                        System.out.println(path.get(i) + " appeared in " + game.getActorsToMovies().getLabel(path.get(i),
-                                path.get(i-1)) + " with " + path.get(i-1));
-                    }
-                }
+        //list actors and movies whose names start with <prefix>
+        else if (command == 'f') {
+            out.print(describeMatches(game.getState(), line.substring(2)));
+        }
+
 
+        //find path from <name> to current center of the universe
+        else if (command == 'p') {
+            GraphState state = game.getState();
+            String end = resolveActor(state.getGraph(), state.getActorNames(), line.substring(2));
+            if (end == null) {
+                out.print(describeUnknownActor(line.substring(2), suggestActors(state.getGraph(),
+                        state.getActorNames(), line.substring(2))));
+                return true;
             }
+            List<String> path = game.findPath(end);
+            out.print(describePath(game.getActorsToMovies(), game.getCenterOfUniverse(), end, path));
+        }
 
 
-            //list actors sorted by non-infinite separation from the current center, with separation between low and high
-            else if (command == 's') {
-                int low = Integer.parseInt(line.split(" ")[1]);
-                int high = Integer.parseInt(line.split(" ")[2]);
-                class separationComparator implements Comparator<String> {  //compare two vertices by their separation
-                    public int compare(String v1, String v2) {
-                        return GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()),
-                                v1).size() - GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(),
-                                game.getCenterOfUniverse()), v2).size();
-                    }
-                }
-                Comparator<String> sepCompare = new separationComparator();
-                ArrayList<String> sortedVertices = new ArrayList<String>();
-                for (String vertex: game.getActorsToMovies().vertices()) { //loop through every vertex
-                    if (GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()), vertex).size()-1
-                            >= low && GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()),
-                            vertex).size()-1 <= high & GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(),
-                            game.getCenterOfUniverse()), vertex).size() != 0) { //if separation is non-infinite and between low and high
-                        sortedVertices.add(vertex);
-                    }
-                }
-                sortedVertices.sort(sepCompare);
-                for (int i = 0; i < sortedVertices.size(); i++) {
-                    System.out.println(sortedVertices.get(i) + " has a " + game.getCenterOfUniverse() + " number of "
-                            + (GraphLibrary.getPath(GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()),
-                            sortedVertices.get(i)).size()-1));
-                }
+        //list actors sorted by non-infinite separation from the current center, with separation between low and high
+        else if (command == 's') {
+            int low = Integer.parseInt(line.split(" ")[1]);
+            int high = Integer.parseInt(line.split(" ")[2]);
+            ShortestPathResult centerTree = game.getCenterTree(); //actors already bucketed by separation
+            for (int i = centerTree.levelStart(low); i < centerTree.levelEnd(high); i++) { //buckets low..high, in order
+                int vertex = centerTree.vertexAt(i);
+                out.println(game.getActorsToMovies().nameOf(vertex) + " has a " + game.getCenterOfUniverse()
+                        + " number of " + centerTree.distanceTo(vertex));
             }
+        }
 
 
-            //make <name> the center of the universe
-            else if (command == 'u') {
-                game.setCenterOfUniverse(line.substring(2));
-                int numConnected = GraphLibrary.bfs(game.getActorsToMovies(), game.getCenterOfUniverse()).numVertices()-1; //all actors they can reach
-                int totalNum = game.getActorsToMovies().numVertices()-1; //total number of actors in actors-> movies database
-                double avSeparation = GraphLibrary.averageSeparation(GraphLibrary.bfs(game.getActorsToMovies(),
-                        game.getCenterOfUniverse()), game.getCenterOfUniverse());
-                System.out.println("The new center of the Universe is " + game.getCenterOfUniverse() + ", connected to "
-                        + numConnected + "/" + totalNum + " actors with an average separation of " + avSeparation);
+        //make <name> the center of the universe
+        else if (command == 'u') {
+            GraphState state = game.getState();
+            String center = resolveActor(state.getGraph(), state.getActorNames(), line.substring(2));
+            if (center == null) { //keep the current center
+                out.print(describeUnknownActor(line.substring(2), suggestActors(state.getGraph(),
+                        state.getActorNames(), line.substring(2))));
+                return true;
             }
+            game.setCenterOfUniverse(center);
+            ShortestPathResult centerTree = game.getCenterTree();
+            int numConnected = game.getComponents().reachableCount(game.getCenterOfUniverse())-1; //all actors they can reach
+            int totalNum = game.getActorsToMovies().numVertices()-1; //total number of actors in actors-> movies database
+            double avSeparation = GraphLibrary.averageSeparation(centerTree, game.getCenterOfUniverse());
+            out.println(describeCenter(game.getCenterOfUniverse(), numConnected, totalNum, avSeparation));
+        }
 
 
-            //quit game
-            else if (command == 'q') {
-                System.out.println("Thank you for playing!");
-                break;
-            }
+        //find the path from <name> to the current center with the strongest ties, through costars with at least <#>
+        //movies together, each step costing 1 / movies shared
+        else if (command == 'w') {
+            String[] tokens = line.split(" ", 3);
+            printConstrainedPath(game, tokens[2], EdgeRule.ANY.withMinShared(Integer.parseInt(tokens[1])).weighted(), out);
+        }
 
 
-            else {
-                System.out.println("Invalid input\n");
-            }
+        //find path from <name> to the current center using only movies released from <from> to <to>
+        else if (command == 'y') {
+            String[] tokens = line.split(" ", 4);
+            EdgeRule rule = EdgeRule.ANY.inYears(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+            printConstrainedPath(game, tokens[3], rule, out);
+        }
+
+
+        //quit game
+        else if (command == 'q') {
+            out.println("Thank you for playing!");
+            return false;
+        }
+
+
+        else {
+            out.println("Invalid input\n");
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        BaconGame game;
+        if (args.length > 1 && args[0].equals("--inputs")) { //play on another directory of input files, e.g. generated
+            String dir = args[1];
+            game = new BaconGame(new String[] {dir + "/actors.txt", dir + "/movies.txt", dir + "/movie-actors.txt"},
+                    dir + "/actorsToMovies.snapshot");
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        else {
+            game = new BaconGame();
+        }
+        if (args.length > 0 && args[0].equals("--server")) { //serve line-delimited JSON instead of playing
+            BaconServer server = new BaconServer(game);
+            if (args.length > 1) server.serveSocket(Integer.parseInt(args[1]));
+            else server.serveStdio();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--batch")) { //run a file of commands instead of playing
+            BaconBatch.runFile(game, args[1]);
+            return;
+        }
+        Scanner scan = new Scanner(System.in);
+        System.out.println("Welcome to the Kevin Bacon game!");
+        System.out.println("Note: The center of the universe is autoset to be Kevin Bacon");
+
+        while (true) {
+            System.out.println("\n" + BaconGame.getInstructions());
+            System.out.println("\nWrite your command here:");
+
+            if (!runCommand(game, scan.nextLine(), System.out)) break;
         }
 
         test1();
         test2();
         test3();
+        test4();
+        test5();
 
     } //end of main
 } //end of class
@@ -0,0 +1,485 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Serves Kevin Bacon game queries to many clients at once, as line-delimited JSON over stdin/stdout or over a local
+ * socket. Each request is one JSON object on a line, carrying an "id" that is echoed back, an "op", and its own
+ * "center" (Kevin Bacon if left out), so no request depends on another's state:
+ *
+ *   {"id": 1, "op": "path", "center": "Kevin Bacon", "name": "Alice"}
+ *   {"id": 7, "op": "path", "name": "Alice", "from": 1990, "to": 1999, "minShared": 2, "weighted": true}
+ *   {"id": 2, "op": "separations", "center": "Alice", "low": 1, "high": 2}
+ *   {"id": 3, "op": "infinite", "center": "Alice"}
+ *   {"id": 4, "op": "center", "center": "Bob"}
+ *   {"id": 5, "op": "degrees", "low": 1, "high": 3}
+ *   {"id": 6, "op": "centers", "number": -5}
+ *   {"id": 8, "op": "centers", "number": 10, "pivots": 512}
+ *
+ * Each response is one line, {"id": ..., "ok": true, ...} or {"id": ..., "ok": false, "error": "..."}, written as
+ * soon as its request finishes, so responses can come back in a different order than the requests went in.
+ *
+ * Each request takes the game's current GraphState when it starts and only reads it, so requests run concurrently
+ * with no locking, and with updates to the game: a request sees the graph either wholly before or wholly after an
+ * update. They run on virtual threads where the JVM has them, otherwise on a pool with one thread per core. Path queries
+ * borrow their BFS arrays from GraphLibrary's pool, and whole shortest path trees are shared between requests for the
+ * same center through a small LRU cache. A tree is searched outside the cache's lock, so requests for other centers
+ * never wait on it, while requests for the same center wait for the one search instead of starting their own.
+ * "centers" estimates from pivots on graphs too large for a search from every actor, as the c command does, and all
+ * parallel searches share GraphLibrary's worker threads.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class BaconServer {
+    private static final int TREE_CACHE_SIZE = 16;  //most centers whose path trees are kept at once
+    private static final int MAX_IN_FLIGHT = 1024;  //most requests of one client being answered at once
+
+    private BaconGame game;                                 //game whose current state is served
+    private Map<String, CachedTree> trees;                  //cache: center -> shortest paths from it, least recently
+                                                            //used first; guarded by its own lock
+    private ExecutorService requests;                       //runs the queries
+    private ExecutorService connections;                    //reads requests from socket clients
+
+    /**
+     * @param game - loaded game whose graph is served, as it is updated
+     */
+    public BaconServer(BaconGame game) {
+        this.game = game;
+        trees = new LinkedHashMap<String, CachedTree>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTree> eldest) {
+                return size() > TREE_CACHE_SIZE;
+            }
+        };
+        requests = virtualThreads(Executors.newFixedThreadPool(GraphLibrary.defaultThreads()));
+        connections = virtualThreads(Executors.newCachedThreadPool());
+    }
+
+    /**
+     * @param fallback - executor to use if the JVM has no virtual threads
+     * @return - an executor starting a virtual thread per task (Java 21 and later), otherwise fallback
+     */
+    private static ExecutorService virtualThreads(ExecutorService fallback) {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            fallback.shutdown();
+            return virtual;
+        }
+        catch (ReflectiveOperationException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * answer requests from stdin on stdout until stdin ends
+     */
+    public void serveStdio() {
+        serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        shutdown();
+    }
+
+    /**
+     * accept clients on a local socket, answering each one's requests until it disconnects; runs until the process
+     * is stopped
+     * @param port - port to listen on (loopback only)
+     */
+    public void serveSocket(int port) {
+        try (ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            System.err.println("Serving the Kevin Bacon game on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket client = server.accept();
+                connections.submit(() -> {
+                    try (Socket socket = client) {
+                        serve(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+                                new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+                    }
+                    catch (IOException e) {
+                        System.err.println("Client connection failed.\n" + e.getMessage());
+                    }
+                });
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Cannot serve on port " + port + ".\n" + e.getMessage());
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * answer every request line of one client, returning once all the answers are written
+     * @param in - the client's requests
+     * @param out - where the client's responses go
+     */
+    public void serve(BufferedReader in, PrintWriter out) {
+        Semaphore slots = new Semaphore(MAX_IN_FLIGHT); //stop reading while this many requests are unanswered
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String request = line;
+                slots.acquireUninterruptibly();
+                requests.submit(() -> {
+                    try {
+                        String response = handle(request);
+                        synchronized (out) {
+                            out.println(response);
+                            out.flush();
+                        }
+                    }
+                    finally {
+                        slots.release();
+                    }
+                });
+            }
+        }
+        catch (IOException e) {
+            System.err.println("IO error while reading requests.\n" + e.getMessage());
+        }
+        slots.acquireUninterruptibly(MAX_IN_FLIGHT); //every answer has been written
+    }
+
+    /**
+     * stop the threads serving requests
+     */
+    public void shutdown() {
+        requests.shutdown();
+        connections.shutdown();
+    }
+
+    /**
+     * answer one request
+     * @param line - the request, a JSON object
+     * @return - the response, a JSON object on one line
+     */
+    public String handle(String line) {
+        Object id = null;
+        String op = null;
+        long began = Metrics.start();
+        try {
+            Map<String, Object> request = JsonLine.parse(line);
+            id = request.get("id");
+            GraphState state = game.getState(); //the whole request reads this one version
+            op = text(request, "op", null);
+            StringBuilder response = start(id, true);
+            if (op == null) throw new IllegalArgumentException("Missing op");
+            switch (op) {
+                case "path": path(state, request, response); break;
+                case "separations": separations(state, request, response); break;
+                case "infinite": infinite(state, request, response); break;
+                case "center": center(state, request, response); break;
+                case "degrees": degrees(state, request, response); break;
+                case "centers": centers(state, request, response); break;
+                default: throw new IllegalArgumentException("Unknown op: " + op);
+            }
+            return response.append('}').toString();
+        }
+        catch (RuntimeException e) { //a bad request (or a bug) fails only that request
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            return start(id, false).append(",\"error\":").append(JsonLine.quote(message)).append('}').toString();
+        }
+        finally {
+            if (Metrics.ENABLED) Metrics.time("server." + (op != null ? op : "invalid"), began);
+        }
+    }
+
+    /**
+     * {"op": "path", "center": ..., "name": ...} -> "number" (null if infinite) and the "path" from name to the center
+     * as steps {"actor", "movies", "costar"}. Optional "from" and "to" years, "minShared" and "weighted" restrict the
+     * path to the edges an EdgeRule allows (and add its "cost" if weighted); steps then list only the movies counted.
+     */
+    private void path(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        int center = actor(state, request, "center");
+        int end = actor(state, request, "name");
+        EdgeRule rule = rule(request);
+        ShortestPathResult tree = cachedTree(graph, center);
+        int[] path;
+        if (rule != null) {
+            path = GraphLibrary.constrainedPath(graph, center, end, rule);
+            if (rule.isWeighted()) {
+                response.append(",\"cost\":").append(path.length == 0 ? "null" : jsonNumber(rule.cost(graph, path)));
+            }
+        }
+        else if (tree != null) { //read the path off a tree another request already built
+            List<String> names = tree.pathTo(graph.nameOf(end));
+            path = new int[names.size()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = graph.indexOf(names.get(i));
+            }
+        }
+        else {
+            path = GraphLibrary.shortestPath(graph, center, end);
+        }
+        response.append(",\"number\":").append(path.length == 0 ? "null" : String.valueOf(path.length - 1));
+        response.append(",\"path\":[");
+        for (int i = path.length-1; i > 0; i--) { //from name back to the center, as the p command prints it
+            if (i < path.length-1) response.append(',');
+            response.append("{\"actor\":").append(JsonLine.quote(graph.nameOf(path[i]))).append(",\"movies\":[");
+            int first = 0;
+            Set<String> movies = rule != null ? rule.movies(graph, graph.edgeIndex(path[i], path[i-1]))
+                    : graph.getLabel(graph.nameOf(path[i]), graph.nameOf(path[i-1]));
+            for (String movie: movies) {
+                if (first++ > 0) response.append(',');
+                response.append(JsonLine.quote(movie));
+            }
+            response.append("],\"costar\":").append(JsonLine.quote(graph.nameOf(path[i-1]))).append('}');
+        }
+        response.append(']');
+    }
+
+    /**
+     * {"op": "separations", "center": ..., "low": ..., "high": ...} -> "actors" with separation between low and high,
+     * as {"actor", "separation"} in order of separation
+     */
+    private void separations(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        ShortestPathResult tree = tree(graph, actor(state, request, "center"));
+        int low = (int) number(request, "low"), high = (int) number(request, "high");
+        response.append(",\"actors\":[");
+        for (int i = tree.levelStart(low); i < tree.levelEnd(high); i++) {
+            int v = tree.vertexAt(i);
+            if (i > tree.levelStart(low)) response.append(',');
+            response.append("{\"actor\":").append(JsonLine.quote(graph.nameOf(v))).append(",\"separation\":")
+                    .append(tree.distanceTo(v)).append('}');
+        }
+        response.append(']');
+    }
+
+    /**
+     * {"op": "infinite", "center": ...} -> "actors" with no path to the center
+     */
+    private void infinite(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        ComponentIndex components = state.getComponents();
+        int centerComponent = components.componentOf(actor(state, request, "center"));
+        response.append(",\"actors\":[");
+        int count = 0;
+        for (int v = 0; v < graph.numVertices(); v++) {
+            if (components.componentOf(v) != centerComponent) {
+                if (count++ > 0) response.append(',');
+                response.append(JsonLine.quote(graph.nameOf(v)));
+            }
+        }
+        response.append(']');
+    }
+
+    /**
+     * {"op": "center", "center": ...} -> "connected" actors out of "total", and their "averageSeparation"
+     */
+    private void center(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        ComponentIndex components = state.getComponents();
+        int center = actor(state, request, "center");
+        ShortestPathResult tree = tree(graph, center);
+        response.append(",\"connected\":").append(components.componentSize(components.componentOf(center)) - 1);
+        response.append(",\"total\":").append(graph.numVertices() - 1);
+        response.append(",\"averageSeparation\":").append(jsonNumber(tree.averageSeparation()));
+    }
+
+    /**
+     * {"op": "degrees", "low": ..., "high": ...} -> "actors" with degree between low and high, as {"actor", "degree"}
+     * in order of degree
+     */
+    private void degrees(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        DegreeIndex degrees = state.getDegrees();
+        int low = (int) number(request, "low"), high = (int) number(request, "high");
+        response.append(",\"actors\":[");
+        for (int i = degrees.rangeStart(low); i < degrees.rangeEnd(high); i++) {
+            if (i > degrees.rangeStart(low)) response.append(',');
+            response.append("{\"actor\":").append(JsonLine.quote(graph.nameOf(degrees.vertexAt(i))))
+                    .append(",\"degree\":").append(degrees.degreeAt(i)).append('}');
+        }
+        response.append(']');
+    }
+
+    /**
+     * {"op": "centers", "center": ..., "number": ...} -> the top (positive number) or bottom (negative) "centers" of
+     * the center's universe, as {"actor", "averageSeparation"} best first. On graphs of more than
+     * BaconGame.EXACT_CLOSENESS_LIMIT actors, or given "pivots", the separations are estimated from that many pivots
+     * (BaconGame.DEFAULT_PIVOTS if left out), doubled until the chosen centers are separated from the rest, as the c
+     * command does; the response then says "estimated" with the number of "pivots" searched, and each center has its
+     * interval's "lowerBound" and "upperBound".
+     */
+    private void centers(GraphState state, Map<String, Object> request, StringBuilder response) {
+        CSRGraph graph = state.getGraph();
+        ComponentIndex components = state.getComponents();
+        int component = components.componentOf(actor(state, request, "center"));
+        int number = (int) number(request, "number");
+        int threads = GraphLibrary.defaultThreads();
+        if (number != 0 && (request.containsKey("pivots") || graph.numVertices() > BaconGame.EXACT_CLOSENESS_LIMIT)) {
+            int pivots = request.containsKey("pivots") ? (int) number(request, "pivots") : BaconGame.DEFAULT_PIVOTS;
+            ClosenessEstimator estimator = new ClosenessEstimator(components, component,
+                    ClosenessEstimator.DEFAULT_CONFIDENCE, BaconGame.PIVOT_SEED);
+            int[] ranked = estimator.separatedRanking(Math.abs(number), number > 0, pivots, threads, null);
+            response.append(",\"estimated\":true,\"pivots\":").append(estimator.sampleCount());
+            response.append(",\"centers\":[");
+            for (int i = 0; i < ranked.length; i++) {
+                if (i > 0) response.append(',');
+                response.append("{\"actor\":").append(JsonLine.quote(graph.nameOf(ranked[i])))
+                        .append(",\"averageSeparation\":").append(jsonNumber(estimator.estimate(ranked[i])))
+                        .append(",\"lowerBound\":").append(jsonNumber(estimator.lowerBound(ranked[i])))
+                        .append(",\"upperBound\":").append(jsonNumber(estimator.upperBound(ranked[i]))).append('}');
+            }
+            response.append(']');
+            return;
+        }
+        int[] universe = components.members(component);
+        TopK chosen;
+        if (number > 0) {
+            chosen = GraphLibrary.closestCenters(graph, components, universe, number, threads);
+        }
+        else {
+            chosen = TopK.select(universe, GraphLibrary.averageSeparations(graph, universe, threads), -number, false);
+        }
+        int[] vertices = chosen.vertices();
+        double[] separations = chosen.scores();
+        response.append(",\"estimated\":false,\"centers\":[");
+        for (int i = 0; i < vertices.length; i++) {
+            if (i > 0) response.append(',');
+            response.append("{\"actor\":").append(JsonLine.quote(graph.nameOf(vertices[i])))
+                    .append(",\"averageSeparation\":").append(jsonNumber(separations[i])).append('}');
+        }
+        response.append(']');
+    }
+
+    /**
+     * A path tree of one graph, searched by the first request to ask for it and waited on by the rest
+     */
+    private static class CachedTree {
+        private CSRGraph graph;                                 //graph the tree is searched in
+        private CompletableFuture<ShortestPathResult> tree = new CompletableFuture<ShortestPathResult>();
+
+        CachedTree(CSRGraph graph) {
+            this.graph = graph;
+        }
+    }
+
+    /**
+     * @param graph - graph the request reads
+     * @param center - vertex index of the center
+     * @return - shortest path tree from center, shared with every other request for the same center while cached
+     */
+    private ShortestPathResult tree(CSRGraph graph, int center) {
+        String name = graph.nameOf(center);
+        CachedTree cached;
+        boolean hit;
+        synchronized (trees) {
+            cached = trees.get(name);
+            hit = cached != null && cached.graph == graph; //a tree of an older graph is searched again
+            if (!hit) {
+                cached = new CachedTree(graph);
+                trees.put(name, cached);
+            }
+        }
+        if (Metrics.ENABLED) Metrics.recordCache("server", hit);
+        if (!hit) {
+            try {
+                cached.tree.complete(GraphLibrary.shortestPaths(graph, name));
+            }
+            catch (RuntimeException e) { //fail the waiting requests too, and let the next one search again
+                cached.tree.completeExceptionally(e);
+                synchronized (trees) {
+                    trees.remove(name, cached);
+                }
+            }
+        }
+        try {
+            return cached.tree.join();
+        }
+        catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @param graph - graph the request reads
+     * @param center - vertex index of the center
+     * @return - the cached shortest path tree from center if one is already searched in graph, otherwise null
+     */
+    private ShortestPathResult cachedTree(CSRGraph graph, int center) {
+        CachedTree cached;
+        synchronized (trees) {
+            cached = trees.get(graph.nameOf(center));
+        }
+        if (cached == null || cached.graph != graph || !cached.tree.isDone() || cached.tree.isCompletedExceptionally()) {
+            return null;
+        }
+        return cached.tree.join();
+    }
+
+    /**
+     * @param state - state the request reads
+     * @param request - parsed request
+     * @param key - key naming an actor, in any case (the center defaults to Kevin Bacon)
+     * @return - vertex index of that actor
+     * @throws IllegalArgumentException if the actor is missing or not in the graph, suggesting close names
+     */
+    private int actor(GraphState state, Map<String, Object> request, String key) {
+        String name = text(request, key, key.equals("center") ? "Kevin Bacon" : null);
+        if (name == null) throw new IllegalArgumentException("Missing " + key);
+        int v = state.getActorNames().resolve(name, state.getGraph().indexOf(name));
+        if (v < 0) {
+            List<String> close = BaconGame.suggestActors(state.getGraph(), state.getActorNames(), name);
+            throw new IllegalArgumentException("No such actor: " + name
+                    + (close.isEmpty() ? "" : "; did you mean " + String.join(", ", close) + "?"));
+        }
+        return v;
+    }
+
+    /**
+     * @param request - parsed path request
+     * @return - the rule its "from", "to", "minShared" and "weighted" keys ask for, or null if it has none of them
+     */
+    private static EdgeRule rule(Map<String, Object> request) {
+        if (!request.containsKey("from") && !request.containsKey("to") && !request.containsKey("minShared")
+                && !request.containsKey("weighted")) {
+            return null;
+        }
+        EdgeRule rule = EdgeRule.ANY;
+        if (request.containsKey("from") || request.containsKey("to")) {
+            rule = rule.inYears(request.containsKey("from") ? (int) number(request, "from") : Integer.MIN_VALUE,
+                    request.containsKey("to") ? (int) number(request, "to") : Integer.MAX_VALUE);
+        }
+        if (request.containsKey("minShared")) rule = rule.withMinShared((int) number(request, "minShared"));
+        if (Boolean.TRUE.equals(request.get("weighted"))) rule = rule.weighted();
+        return rule;
+    }
+
+    private static String text(Map<String, Object> request, String key, String missing) {
+        Object value = request.get(key);
+        if (value == null) return missing;
+        if (!(value instanceof String)) throw new IllegalArgumentException(key + " must be a string");
+        return (String) value;
+    }
+
+    private static long number(Map<String, Object> request, String key) {
+        Object value = request.get(key);
+        if (!(value instanceof Long)) throw new IllegalArgumentException(key + " must be a whole number");
+        return (Long) value;
+    }
+
+    /**
+     * @param x - number to write
+     * @return - x as JSON, which has no NaN or infinity, so those are written as null
+     */
+    private static String jsonNumber(double x) {
+        return Double.isNaN(x) || Double.isInfinite(x) ? "null" : String.valueOf(x);
+    }
+
+    /**
+     * @param id - the request's id, echoed back as it came
+     * @param ok - whether the request succeeded
+     * @return - the start of a response object, ready for more fields
+     */
+    private static StringBuilder start(Object id, boolean ok) {
+        StringBuilder response = new StringBuilder("{\"id\":");
+        response.append(id instanceof String ? JsonLine.quote((String) id) : String.valueOf(id));
+        return response.append(",\"ok\":").append(ok);
+    }
+}
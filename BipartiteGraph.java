@@ -0,0 +1,261 @@
+import java.util.*;
+
+/**
+ * Actor graph kept in its bipartite actor-movie form: each actor's sorted list of movies and each movie's sorted
+ * cast, both in CSR layout. Costar edges are implicit - two actors are neighbors when their movie lists intersect -
+ * so memory grows with the number of credits rather than with the square of cast sizes.
+ *
+ * The Graph interface answers in terms of costars just like CSRGraph does, computing neighbors and labels from the
+ * movie lists on demand. A BipartiteGraph is built by CSRGraph.Builder.buildBipartite and can't be mutated.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class BipartiteGraph implements IndexedGraph {
+    private String[] names;                 //vertex index -> actor name
+    private int[] actorIds;                 //vertex index -> actor ID from actors.txt
+    private Map<String, Integer> index;     //actor name -> vertex index
+    private int[] actorMovieOffsets;        //actor u's movies are actorMovies[actorMovieOffsets[u]..actorMovieOffsets[u+1]-1]
+    private int[] actorMovies;              //dense movie indices, sorted within each actor
+    private int[] movieActorOffsets;        //movie m's cast is movieActors[movieActorOffsets[m]..movieActorOffsets[m+1]-1]
+    private int[] movieActors;              //vertex indices, sorted within each movie
+    private String[] movieNames;            //dense movie index -> movie name
+    private int[] degrees;                  //vertex index -> number of distinct costars
+    private long numEdges;                  //sum of degrees (each costar pair counted in both directions)
+
+    BipartiteGraph(String[] names, int[] actorIds, Map<String, Integer> index, int[] actorMovieOffsets,
+                   int[] actorMovies, int[] movieActorOffsets, int[] movieActors, String[] movieNames) {
+        this.names = names;
+        this.actorIds = actorIds;
+        this.index = index;
+        this.actorMovieOffsets = actorMovieOffsets;
+        this.actorMovies = actorMovies;
+        this.movieActorOffsets = movieActorOffsets;
+        this.movieActors = movieActors;
+        this.movieNames = movieNames;
+
+        degrees = new int[names.length]; //count distinct costars, marking each one with the actor being counted
+        int[] stamp = new int[names.length];
+        Arrays.fill(stamp, -1);
+        for (int u = 0; u < names.length; u++) {
+            for (int i = actorMovieOffsets[u]; i < actorMovieOffsets[u+1]; i++) {
+                int m = actorMovies[i];
+                for (int j = movieActorOffsets[m]; j < movieActorOffsets[m+1]; j++) {
+                    int v = movieActors[j];
+                    if (v != u && stamp[v] != u) {
+                        stamp[v] = u;
+                        degrees[u]++;
+                    }
+                }
+            }
+            numEdges += degrees[u];
+        }
+    }
+
+    // ---- int-indexed access, used by GraphLibrary's traversals ----
+
+    public int indexOf(String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : i;
+    }
+
+    public String nameOf(int u) {
+        return names[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - actor ID (from actors.txt) of that vertex
+     */
+    public int actorIdOf(int u) {
+        return actorIds[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - number of distinct costars of u
+     */
+    public int degree(int u) {
+        return degrees[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - first position of u's movies in the actor -> movie array
+     */
+    public int movieStart(int u) {
+        return actorMovieOffsets[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - one past the last position of u's movies in the actor -> movie array
+     */
+    public int movieEnd(int u) {
+        return actorMovieOffsets[u+1];
+    }
+
+    /**
+     * @param i - position in the actor -> movie array
+     * @return - dense movie index stored there
+     */
+    public int movieAt(int i) {
+        return actorMovies[i];
+    }
+
+    /**
+     * @param m - dense movie index
+     * @return - first position of m's cast in the movie -> actor array
+     */
+    public int castStart(int m) {
+        return movieActorOffsets[m];
+    }
+
+    /**
+     * @param m - dense movie index
+     * @return - one past the last position of m's cast in the movie -> actor array
+     */
+    public int castEnd(int m) {
+        return movieActorOffsets[m+1];
+    }
+
+    /**
+     * @param i - position in the movie -> actor array
+     * @return - vertex index stored there
+     */
+    public int castMember(int i) {
+        return movieActors[i];
+    }
+
+    /**
+     * @param movie - dense movie index
+     * @return - name of that movie
+     */
+    public String movieName(int movie) {
+        return movieNames[movie];
+    }
+
+    /**
+     * @return - number of distinct movies known to the graph
+     */
+    public int numMovies() {
+        return movieNames.length;
+    }
+
+    // ---- Graph interface ----
+
+    public int numVertices() {
+        return names.length;
+    }
+
+    public int numEdges() {
+        return (int) Math.min(Integer.MAX_VALUE, numEdges);
+    }
+
+    public Iterable<String> vertices() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    public boolean hasVertex(String v) {
+        return index.containsKey(v);
+    }
+
+    public boolean hasEdge(String u, String v) {
+        Set<String> label = getLabel(u, v);
+        return label != null;
+    }
+
+    public Set<String> getLabel(String u, String v) {
+        int ui = indexOf(u), vi = indexOf(v);
+        if (ui < 0 || vi < 0 || ui == vi) return null;
+        Set<String> label = new HashSet<String>();
+        int i = actorMovieOffsets[ui], j = actorMovieOffsets[vi]; //merge the two sorted movie lists
+        while (i < actorMovieOffsets[ui+1] && j < actorMovieOffsets[vi+1]) {
+            if (actorMovies[i] < actorMovies[j]) i++;
+            else if (actorMovies[i] > actorMovies[j]) j++;
+            else {
+                label.add(movieNames[actorMovies[i]]);
+                i++;
+                j++;
+            }
+        }
+        return label.isEmpty() ? null : label;
+    }
+
+    public int outDegree(String u) {
+        return degrees[vertexIndex(u)];
+    }
+
+    public int inDegree(String u) {
+        return degrees[vertexIndex(u)];
+    }
+
+    public Iterable<String> outNeighbors(String u) {
+        return costarNames(vertexIndex(u));
+    }
+
+    public Iterable<String> inNeighbors(String u) {
+        return costarNames(vertexIndex(u));
+    }
+
+    public void insertVertex(String v) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void insertDirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void insertUndirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeVertex(String v) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeDirected(String u, String v) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeUndirected(String u, String v) {
+        throw new UnsupportedOperationException("BipartiteGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("BipartiteGraph: " + numVertices() + " actors, " + numMovies() + " movies\n");
+        for (int u = 0; u < names.length; u++) {
+            s.append(names[u]).append(" -> ").append(costarNames(u)).append("\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * @param u - actor name
+     * @return - vertex index of u
+     * @throws IllegalArgumentException if u is not in the graph
+     */
+    private int vertexIndex(String u) {
+        int i = indexOf(u);
+        if (i < 0) throw new IllegalArgumentException("No such vertex: " + u);
+        return i;
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - names of u's distinct costars
+     */
+    private List<String> costarNames(int u) {
+        Set<Integer> costars = new TreeSet<Integer>();
+        for (int i = actorMovieOffsets[u]; i < actorMovieOffsets[u+1]; i++) {
+            int m = actorMovies[i];
+            for (int j = movieActorOffsets[m]; j < movieActorOffsets[m+1]; j++) {
+                if (movieActors[j] != u) costars.add(movieActors[j]);
+            }
+        }
+        List<String> result = new ArrayList<String>(costars.size());
+        for (int v: costars) {
+            result.add(names[v]);
+        }
+        return result;
+    }
+}
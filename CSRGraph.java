@@ -0,0 +1,1160 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable actor graph stored in compressed sparse row (CSR) form. Every actor is given a dense int index, and the
+ * neighbors of actor u are the contiguous slice targets[offsets[u]] .. targets[offsets[u+1]-1] (sorted by index).
+ * The movies on each edge are kept off the heap by EdgeLabels, one compressed label shared by both directions of an
+ * edge and decoded only when asked for. No per-vertex maps or per-edge sets are kept, so the whole graph is a handful
+ * of int arrays on the heap. The game numbers actors in a VertexOrder once they are loaded, so that searches read
+ * these arrays in runs rather than all over.
+ *
+ * The Graph interface is implemented on top of the int representation so existing code keeps working; the mutating
+ * methods throw, since a CSRGraph is built once by a CSRGraph.Builder.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class CSRGraph implements IndexedGraph {
+    private String[] names;                 //vertex index -> actor name
+    private int[] actorIds;                 //vertex index -> actor ID from actors.txt
+    private Map<String, Integer> index;     //actor name -> vertex index, maybe shared with later patched graphs
+    private int[] offsets;                  //vertex index -> first edge slot of that vertex (length numVertices+1)
+    private int[] targets;                  //edge slot -> neighbor vertex index
+    private EdgeLabels labels;              //edge slot -> dense movie indices of its movies, off the heap
+    private String[] movieNames;            //dense movie index -> movie name
+    private short[] movieYears;             //dense movie index -> year from its name, 0 if it has none
+
+    private CSRGraph(String[] names, int[] actorIds, Map<String, Integer> index, int[] offsets, int[] targets,
+                     EdgeLabels labels, String[] movieNames) {
+        this(names, actorIds, index, offsets, targets, labels, movieNames, new short[0]);
+    }
+
+    /**
+     * @param knownYears - years of the first movies, already read from their names
+     */
+    private CSRGraph(String[] names, int[] actorIds, Map<String, Integer> index, int[] offsets, int[] targets,
+                     EdgeLabels labels, String[] movieNames, short[] knownYears) {
+        this.names = names;
+        this.actorIds = actorIds;
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = labels;
+        this.movieNames = movieNames;
+        movieYears = Arrays.copyOf(knownYears, movieNames.length);
+        for (int m = knownYears.length; m < movieNames.length; m++) {
+            movieYears[m] = yearOf(movieNames[m]);
+        }
+    }
+
+    /**
+     * Helper function for the constructor: the release year movies.txt writes in a title, as "(1990)" or "(1990/I)"
+     * @param name - movie name, or null
+     * @return - the year in the last such parentheses, or 0 if there are none
+     */
+    private static short yearOf(String name) {
+        if (name == null) return 0;
+        for (int i = name.lastIndexOf('('); i >= 0; i = name.lastIndexOf('(', i-1)) {
+            if (i + 5 < name.length() && (name.charAt(i+5) == ')' || name.charAt(i+5) == '/')) {
+                int year = 0;
+                for (int j = i+1; j <= i+4 && year >= 0; j++) {
+                    char c = name.charAt(j);
+                    year = c >= '0' && c <= '9' ? year * 10 + (c - '0') : -1;
+                }
+                if (year >= 0) return (short) year;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Build a CSRGraph with the same vertices, edges and labels as another graph
+     * @param g - graph to copy
+     * @return - CSRGraph copy of g
+     */
+    public static CSRGraph copyOf(Graph<String, Set<String>> g) {
+        Builder builder = new Builder();
+        int nextId = 0;
+        for (String v: g.vertices()) {
+            builder.addVertex(nextId++, v);
+        }
+        Map<String, Integer> movieIds = new HashMap<String, Integer>();
+        for (String u: g.vertices()) {
+            for (String v: g.outNeighbors(u)) {
+                Set<String> label = g.getLabel(u, v);
+                if (label == null || label.isEmpty()) {
+                    builder.addDirected(builder.indexOf(u), builder.indexOf(v), -1);
+                    continue;
+                }
+                for (String movie: label) {
+                    if (!movieIds.containsKey(movie)) {
+                        movieIds.put(movie, movieIds.size());
+                        builder.addMovie(movieIds.get(movie), movie);
+                    }
+                    builder.addDirected(builder.indexOf(u), builder.indexOf(v), builder.movieIndexOf(movieIds.get(movie)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // ---- int-indexed access, used by GraphLibrary's traversals ----
+
+    /**
+     * @param name - actor name
+     * @return - vertex index of that actor, or -1 if there is no such actor
+     */
+    public int indexOf(String name) {
+        Integer i = index.get(name);
+        return i == null || i >= names.length ? -1 : i; //a shared index also holds actors added after this graph
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - actor name of that vertex
+     */
+    public String nameOf(int u) {
+        return names[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - actor ID (from actors.txt) of that vertex
+     */
+    public int actorIdOf(int u) {
+        return actorIds[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - first edge slot of u
+     */
+    public int edgeStart(int u) {
+        return offsets[u];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - one past the last edge slot of u
+     */
+    public int edgeEnd(int u) {
+        return offsets[u+1];
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - vertex index the edge points to
+     */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - number of neighbors of u
+     */
+    public int degree(int u) {
+        return offsets[u+1] - offsets[u];
+    }
+
+    /**
+     * Find the slot of the edge u -> v with a binary search over u's sorted neighbors
+     * @param u - source vertex index
+     * @param v - target vertex index
+     * @return - edge slot, or -1 if there is no such edge
+     */
+    public int edgeIndex(int u, int v) {
+        int e = Arrays.binarySearch(targets, offsets[u], offsets[u+1], v);
+        return e < 0 ? -1 : e;
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - number of movies the edge's actors share
+     */
+    public int labelSize(int e) {
+        return labels.size(e);
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - dense movie indices of the movies the edge's actors share, in increasing order
+     */
+    public int[] labelMovies(int e) {
+        return labels.movies(e);
+    }
+
+    /**
+     * @param e - edge slot
+     * @param from - first year that counts
+     * @param to - last year that counts
+     * @return - number of movies the edge's actors share that were released from..to
+     */
+    public int labelSizeInYears(int e, int from, int to) {
+        return labels.countInYears(e, movieYears, from, to);
+    }
+
+    /**
+     * @return - bytes the edge labels hold off the heap
+     */
+    public long labelBytes() {
+        return labels.offHeapBytes();
+    }
+
+    /**
+     * @param movie - dense movie index
+     * @return - name of that movie
+     */
+    public String movieName(int movie) {
+        return movieNames[movie];
+    }
+
+    /**
+     * @param movie - dense movie index
+     * @return - release year of that movie, from its name, or 0 if the name gives none
+     */
+    public int movieYear(int movie) {
+        return movieYears[movie];
+    }
+
+    /**
+     * @return - number of distinct movies known to the graph
+     */
+    public int numMovies() {
+        return movieNames.length;
+    }
+
+    /**
+     * Helper function for Builder.reorder: this graph with its vertices renumbered. Each row is moved to its new
+     * place with its targets renumbered and sorted again, and each edge slot takes its label along, so no movies
+     * are gathered or encoded again.
+     * @param newIndex - old vertex index -> new vertex index
+     * @param newNames - new vertex index -> actor name
+     * @param newIds - new vertex index -> actor ID
+     * @param newIndexMap - actor name -> new vertex index
+     * @return - the renumbered graph
+     */
+    private CSRGraph renumbered(int[] newIndex, String[] newNames, int[] newIds, Map<String, Integer> newIndexMap) {
+        int n = numVertices();
+        int[] oldIndex = VertexOrder.inverse(newIndex);
+        int[] newOffsets = new int[n+1], newTargets = new int[targets.length];
+        int[] oldSlots = new int[targets.length]; //new edge slot -> old edge slot
+        LongList row = new LongList();
+        for (int u = 0; u < n; u++) {
+            int old = oldIndex[u];
+            row.clear();
+            for (int e = offsets[old]; e < offsets[old+1]; e++) {
+                row.add(((long) newIndex[targets[e]] << 32) | e);
+            }
+            row.sort();
+            int slot = newOffsets[u];
+            for (int i = 0; i < row.size(); i++) {
+                newTargets[slot] = (int) (row.get(i) >>> 32);
+                oldSlots[slot++] = (int) row.get(i);
+            }
+            newOffsets[u+1] = slot;
+        }
+        return new CSRGraph(newNames, newIds, newIndexMap, newOffsets, newTargets, labels.permuted(oldSlots),
+                movieNames);
+    }
+
+    /**
+     * Write the packed arrays to a snapshot; names and IDs are written by the builder
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        out.writeInts(offsets);
+        out.writeInts(targets);
+        labels.writeTo(out);
+    }
+
+    /**
+     * Read the packed arrays written by writeTo
+     * @param in - snapshot being read
+     * @param builder - builder restored from the same snapshot, supplying the names and IDs
+     * @return - the restored graph
+     * @throws IOException if the snapshot can't be read or doesn't match the builder
+     */
+    static CSRGraph readFrom(GraphSnapshot.Input in, Builder builder) throws IOException {
+        int[] offsets = in.readInts(), targets = in.readInts();
+        if (offsets.length != builder.names.size() + 1) throw new IOException("Snapshot graph doesn't match its actors");
+        EdgeLabels labels = EdgeLabels.readFrom(in, targets.length);
+        return new CSRGraph(builder.names.toArray(new String[0]), builder.actorIds.toArray(),
+                new HashMap<String, Integer>(builder.index), offsets, targets, labels,
+                builder.movieNames.toArray(new String[0]));
+    }
+
+    // ---- Graph interface ----
+
+    public int numVertices() {
+        return names.length;
+    }
+
+    public int numEdges() {
+        return targets.length;
+    }
+
+    public Iterable<String> vertices() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    public boolean hasVertex(String v) {
+        return indexOf(v) >= 0;
+    }
+
+    public boolean hasEdge(String u, String v) {
+        int ui = indexOf(u), vi = indexOf(v);
+        return ui >= 0 && vi >= 0 && edgeIndex(ui, vi) >= 0;
+    }
+
+    public Set<String> getLabel(String u, String v) {
+        int ui = indexOf(u), vi = indexOf(v);
+        if (ui < 0 || vi < 0) return null;
+        int e = edgeIndex(ui, vi);
+        if (e < 0) return null;
+        Set<String> label = new HashSet<String>();
+        for (int movie: labels.movies(e)) { //decoded only for the edge asked about
+            label.add(movieNames[movie]);
+        }
+        return label;
+    }
+
+    public int outDegree(String u) {
+        return degree(vertexIndex(u));
+    }
+
+    public int inDegree(String u) {
+        return degree(vertexIndex(u)); //every costar edge is stored in both directions
+    }
+
+    public Iterable<String> outNeighbors(String u) {
+        return neighborNames(vertexIndex(u));
+    }
+
+    public Iterable<String> inNeighbors(String u) {
+        return neighborNames(vertexIndex(u));
+    }
+
+    public void insertVertex(String v) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void insertDirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void insertUndirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeVertex(String v) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeDirected(String u, String v) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    public void removeUndirected(String u, String v) {
+        throw new UnsupportedOperationException("CSRGraph is immutable; build it with CSRGraph.Builder");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("CSRGraph: " + numVertices() + " vertices, " + numEdges() + " edges\n");
+        for (int u = 0; u < names.length; u++) {
+            s.append(names[u]).append(" -> [");
+            for (int e = offsets[u]; e < offsets[u+1]; e++) {
+                if (e > offsets[u]) s.append(", ");
+                s.append(names[targets[e]]);
+            }
+            s.append("]\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * @param u - actor name
+     * @return - vertex index of u
+     * @throws IllegalArgumentException if u is not in the graph
+     */
+    private int vertexIndex(String u) {
+        int i = indexOf(u);
+        if (i < 0) throw new IllegalArgumentException("No such vertex: " + u);
+        return i;
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - view of u's neighbors as actor names
+     */
+    private Iterable<String> neighborNames(int u) {
+        return () -> new Iterator<String>() {
+            int e = offsets[u];
+            public boolean hasNext() {
+                return e < offsets[u+1];
+            }
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return names[targets[e++]];
+            }
+        };
+    }
+
+    /**
+     * Accumulates actors, movies, casts and costar edges into primitive buffers, then packs them into a CSRGraph (or
+     * a BipartiteGraph)
+     */
+    public static class Builder {
+        private ArrayList<String> names = new ArrayList<String>();             //vertex index -> actor name
+        private IntList actorIds = new IntList();                               //vertex index -> actor ID
+        private Map<String, Integer> index = new HashMap<String, Integer>();     //actor name -> vertex index
+        private Map<Integer, Integer> actorIndex = new HashMap<Integer, Integer>(); //actor ID -> vertex index
+        private ArrayList<String> movieNames = new ArrayList<String>();        //dense movie index -> movie name
+        private Map<Integer, Integer> movieIndex = new HashMap<Integer, Integer>(); //movie ID -> dense movie index
+        private IntList castMovie = new IntList();      //cast number -> dense movie index
+        private IntList castOffsets = new IntList();    //cast number -> first position of its actors in castMembers
+        private IntList castMembers = new IntList();    //vertex indices of every cast, cast by cast; -1 once removed
+        private IntList castPrevious = new IntList();   //cast number -> the same movie's cast added before it, or -1
+        private IntList lastCast = new IntList();       //dense movie index -> its last cast added, or -1 if none
+        private IntList edgeFrom = new IntList();       //one entry per explicitly added (directed edge, movie) pair
+        private IntList edgeTo = new IntList();
+        private IntList edgeMovie = new IntList();      //dense movie index, or -1 for an edge with no movie
+        private Map<Integer, LongList> gained = new HashMap<Integer, LongList>(); //since the last build, for patch:
+        private Map<Integer, LongList> lost = new HashMap<Integer, LongList>();   //actor -> (costar << 32) | movie
+        private boolean repack;                         //whether anything since the last build needs a full build
+
+        public Builder() {
+            castOffsets.add(0);
+        }
+
+        /**
+         * Add an actor; adding the same name twice keeps the first index
+         * @param actorId - actor ID from actors.txt
+         * @param name - actor name
+         * @return - vertex index of the actor
+         */
+        public int addVertex(int actorId, String name) {
+            Integer existing = index.get(name);
+            if (existing != null) {
+                actorIndex.put(actorId, existing);
+                return existing;
+            }
+            int i = names.size();
+            names.add(name);
+            actorIds.add(actorId);
+            index.put(name, i);
+            actorIndex.put(actorId, i);
+            return i;
+        }
+
+        /**
+         * Add a movie; adding the same ID twice keeps the first name
+         * @param movieId - movie ID from movies.txt
+         * @param name - movie name
+         * @return - dense movie index
+         */
+        public int addMovie(int movieId, String name) {
+            Integer existing = movieIndex.get(movieId);
+            if (existing != null) return existing;
+            int m = movieNames.size();
+            movieNames.add(name);
+            movieIndex.put(movieId, m);
+            lastCast.add(-1);
+            return m;
+        }
+
+        /**
+         * @param name - actor name
+         * @return - vertex index of the actor, or -1 if it was never added
+         */
+        public int indexOf(String name) {
+            Integer i = index.get(name);
+            return i == null ? -1 : i;
+        }
+
+        /**
+         * @param actorId - actor ID from actors.txt
+         * @return - vertex index of the actor, or -1 if it was never added
+         */
+        public int actorIndexOf(int actorId) {
+            Integer i = actorIndex.get(actorId);
+            return i == null ? -1 : i;
+        }
+
+        /**
+         * @param movieId - movie ID from movies.txt
+         * @return - dense movie index, or -1 if it was never added
+         */
+        public int movieIndexOf(int movieId) {
+            Integer m = movieIndex.get(movieId);
+            return m == null ? -1 : m;
+        }
+
+        /**
+         * Record the cast of a movie. Only the k actors are stored; the costar edges between them are generated when
+         * the graph is built, so a large cast costs O(k) here rather than O(k^2) edge updates. A movie may be given
+         * more than one cast; its casts are kept linked, and together they are its cast.
+         * @param movie - dense movie index
+         * @param cast - vertex indices of the actors in the movie
+         */
+        public void addCast(int movie, IntList cast) {
+            repack = true; //the costars of a cast aren't recorded for patch
+            appendCast(movie, cast);
+        }
+
+        private void appendCast(int movie, IntList cast) {
+            for (int i = 0; i < cast.size(); i++) {
+                castMembers.add(cast.get(i));
+            }
+            castOffsets.add(castMembers.size());
+            castPrevious.add(lastCast.get(movie));
+            lastCast.set(movie, castMovie.size());
+            castMovie.add(movie);
+        }
+
+        /**
+         * Add actors to a movie that may already have a cast. Only the actors not already in it are recorded, as one
+         * more cast of the movie, so each new actor gets an edge to everyone already in the movie.
+         * @param movie - dense movie index
+         * @param actors - vertex indices of the actors to add
+         * @return - vertex indices of the movie's whole cast afterwards, sorted
+         */
+        public IntList addCredits(int movie, IntList actors) {
+            IntList cast = castOf(movie);
+            IntList added = new IntList();
+            for (int i = 0; i < actors.size(); i++) {
+                if (!cast.containsSorted(actors.get(i))) added.add(actors.get(i));
+            }
+            added.sortDistinct();
+            if (added.size() == 0) return cast;
+            appendCast(movie, added);
+            for (int i = 0; i < added.size(); i++) {
+                cast.add(added.get(i));
+            }
+            cast.sortDistinct();
+            repack |= !lost.isEmpty(); //patch can't tell which came first
+            for (int i = 0; i < added.size(); i++) {
+                for (int j = 0; j < cast.size(); j++) {
+                    if (cast.get(j) != added.get(i)) recordPair(gained, added.get(i), cast.get(j), movie);
+                }
+            }
+            return cast;
+        }
+
+        /**
+         * Remove an actor from a movie's cast. Only the movie's own casts are visited; the credit is blanked out
+         * where it is stored rather than compacted away, so removing takes time proportional to the movie's cast.
+         * @param movie - dense movie index
+         * @param actor - vertex index of the actor
+         * @return - true if the actor was in the movie
+         */
+        public boolean removeCredit(int movie, int actor) {
+            boolean removed = false;
+            for (int c = lastCast.get(movie); c >= 0; c = castPrevious.get(c)) {
+                for (int j = castOffsets.get(c); j < castOffsets.get(c+1); j++) {
+                    if (castMembers.get(j) == actor) {
+                        castMembers.set(j, -1);
+                        removed = true;
+                    }
+                }
+            }
+            if (removed) {
+                repack |= !gained.isEmpty(); //patch can't tell which came first
+                IntList cast = castOf(movie);
+                for (int j = 0; j < cast.size(); j++) {
+                    recordPair(lost, actor, cast.get(j), movie);
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Helper function for addCredits and removeCredit: record that two actors gained or lost a movie together
+         * @param pairs - gained or lost
+         * @param a - vertex index of one actor
+         * @param b - vertex index of the other actor
+         * @param movie - dense movie index
+         */
+        private static void recordPair(Map<Integer, LongList> pairs, int a, int b, int movie) {
+            pairs.computeIfAbsent(a, v -> new LongList()).add(((long) b << 32) | movie);
+            pairs.computeIfAbsent(b, v -> new LongList()).add(((long) a << 32) | movie);
+        }
+
+        /**
+         * @param movie - dense movie index
+         * @return - vertex indices of everyone in the movie's casts, sorted
+         */
+        public IntList castOf(int movie) {
+            IntList cast = new IntList();
+            for (int c = lastCast.get(movie); c >= 0; c = castPrevious.get(c)) {
+                for (int j = castOffsets.get(c); j < castOffsets.get(c+1); j++) {
+                    if (castMembers.get(j) >= 0) cast.add(castMembers.get(j));
+                }
+            }
+            cast.sortDistinct();
+            return cast;
+        }
+
+        /**
+         * Record that two actors costarred in a movie (adds both directions)
+         * @param a - vertex index of one actor
+         * @param b - vertex index of the other actor
+         * @param movie - dense movie index
+         */
+        public void addCostars(int a, int b, int movie) {
+            addDirected(a, b, movie);
+            addDirected(b, a, movie);
+        }
+
+        /**
+         * Record a single directed edge carrying a movie
+         * @param from - source vertex index
+         * @param to - target vertex index
+         * @param movie - dense movie index, or -1 to add the edge with no movie
+         */
+        public void addDirected(int from, int to, int movie) {
+            repack = true;
+            edgeFrom.add(from);
+            edgeTo.add(to);
+            edgeMovie.add(movie);
+        }
+
+        /**
+         * Renumber every actor added so far, e.g. by a VertexOrder, and the graph last built from them the same way,
+         * so it lays actors out in the new order without being packed again. Actor IDs, names and casts move with
+         * their actors; actors added later are numbered after them.
+         * @param newIndex - old vertex index -> new vertex index, a permutation of 0 .. number of actors-1
+         * @param built - graph built from everything added so far
+         * @return - built with its actors renumbered, the same graph build() now packs
+         */
+        public CSRGraph reorder(int[] newIndex, CSRGraph built) {
+            int n = names.size();
+            if (newIndex.length != n || built.numVertices() != n) {
+                throw new IllegalArgumentException("Order covers " + newIndex.length + " actors, not " + n);
+            }
+            String[] reorderedNames = new String[n];
+            int[] reorderedIds = new int[n];
+            for (int v = 0; v < n; v++) {
+                reorderedNames[newIndex[v]] = names.get(v);
+                reorderedIds[newIndex[v]] = actorIds.get(v);
+            }
+            names = new ArrayList<String>(Arrays.asList(reorderedNames));
+            actorIds = IntList.of(reorderedIds);
+            index.replaceAll((name, v) -> newIndex[v]);
+            actorIndex.replaceAll((id, v) -> newIndex[v]);
+            castMembers.replaceAll(newIndex);
+            edgeFrom.replaceAll(newIndex);
+            edgeTo.replaceAll(newIndex);
+            changesPacked(); //built has them all
+            return built.renumbered(newIndex, reorderedNames.clone(), actorIds.toArray(),
+                    new HashMap<String, Integer>(index));
+        }
+
+        /**
+         * Write the actors, movies, ID maps, casts and explicit edges to a snapshot
+         * @param out - snapshot being written
+         * @throws IOException if the snapshot can't be written
+         */
+        void writeTo(GraphSnapshot.Output out) throws IOException {
+            out.writeStrings(names.toArray(new String[0]));
+            out.writeInts(actorIds.toArray());
+            writeIdMap(out, actorIndex);
+            out.writeStrings(movieNames.toArray(new String[0]));
+            writeIdMap(out, movieIndex);
+            out.writeInts(castMovie.toArray());
+            out.writeInts(castOffsets.toArray());
+            out.writeInts(castMembers.toArray());
+            out.writeInts(edgeFrom.toArray());
+            out.writeInts(edgeTo.toArray());
+            out.writeInts(edgeMovie.toArray());
+        }
+
+        /**
+         * Restore a builder written by writeTo
+         * @param in - snapshot being read
+         * @return - the restored builder
+         * @throws IOException if the snapshot can't be read
+         */
+        static Builder readFrom(GraphSnapshot.Input in) throws IOException {
+            Builder b = new Builder();
+            b.names = new ArrayList<String>(Arrays.asList(in.readStrings()));
+            b.actorIds = IntList.of(in.readInts());
+            for (int i = 0; i < b.names.size(); i++) {
+                b.index.putIfAbsent(b.names.get(i), i);
+            }
+            readIdMap(in, b.actorIndex);
+            b.movieNames = new ArrayList<String>(Arrays.asList(in.readStrings()));
+            readIdMap(in, b.movieIndex);
+            b.castMovie = IntList.of(in.readInts());
+            b.castOffsets = IntList.of(in.readInts());
+            b.castMembers = IntList.of(in.readInts());
+            for (int m = 0; m < b.movieNames.size(); m++) {
+                b.lastCast.add(-1);
+            }
+            for (int c = 0; c < b.castMovie.size(); c++) { //link each movie's casts again
+                b.castPrevious.add(b.lastCast.get(b.castMovie.get(c)));
+                b.lastCast.set(b.castMovie.get(c), c);
+            }
+            b.edgeFrom = IntList.of(in.readInts());
+            b.edgeTo = IntList.of(in.readInts());
+            b.edgeMovie = IntList.of(in.readInts());
+            return b;
+        }
+
+        private static void writeIdMap(GraphSnapshot.Output out, Map<Integer, Integer> map) throws IOException {
+            int[] keys = new int[map.size()], values = new int[map.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry: map.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i++] = entry.getValue();
+            }
+            out.writeInts(keys);
+            out.writeInts(values);
+        }
+
+        private static void readIdMap(GraphSnapshot.Input in, Map<Integer, Integer> map) throws IOException {
+            int[] keys = in.readInts(), values = in.readInts();
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], values[i]);
+            }
+        }
+
+        /**
+         * Pack everything added so far into a CSRGraph in a single pass over the actors. For each actor, the
+         * (costar, movie) pairs from its casts and its explicitly added edges are gathered into one scratch buffer,
+         * sorted by (costar, movie) so that repeated costars and movies collapse, and appended to the output arrays.
+         * Only one actor's pairs are in memory at a time. The builder is left untouched, so it can keep accumulating
+         * and be built again.
+         * @return - the packed graph
+         */
+        public CSRGraph build() {
+            changesPacked();
+            int n = names.size();
+            int[] explicitStart = new int[n+1];
+            long[] explicit = bucketBySource(explicitStart);
+            int[] creditStart = new int[n+1];
+            int[] credits = castsByActor(creditStart);
+
+            int[] offsets = new int[n+1];
+            IntList targets = new IntList(), movies = new IntList(), actorMovies = new IntList();
+            EdgeLabels.Writer labels = new EdgeLabels.Writer();
+            LongList scratch = new LongList();
+            for (int u = 0; u < n; u++) {
+                scratch.clear();
+                for (int i = explicitStart[u]; i < explicitStart[u+1]; i++) {
+                    scratch.add(explicit[i]);
+                }
+                actorMovies.clear();
+                for (int i = creditStart[u]; i < creditStart[u+1]; i++) {
+                    actorMovies.add(castMovie.get(credits[i]));
+                }
+                actorMovies.sortDistinct(); //once per movie, even if u is in more than one of its casts
+                for (int i = 0; i < actorMovies.size(); i++) {
+                    int m = actorMovies.get(i);
+                    long movie = m & 0xffffffffL;
+                    for (int c = lastCast.get(m); c >= 0; c = castPrevious.get(c)) { //every cast of the movie
+                        for (int j = castOffsets.get(c); j < castOffsets.get(c+1); j++) {
+                            int v = castMembers.get(j);
+                            if (v >= 0 && v != u) scratch.add(((long) v << 32) | movie); //no edge to themself
+                        }
+                    }
+                }
+                scratch.sort();
+                for (int i = 0; i < scratch.size(); i++) {
+                    long pair = scratch.get(i);
+                    boolean newCostar = i == 0 || (pair >>> 32) != (scratch.get(i-1) >>> 32);
+                    if (newCostar) {
+                        if (i > 0) addLabel(labels, offsets, targets, u, movies);
+                        targets.add((int) (pair >>> 32));
+                        movies.clear();
+                    }
+                    if ((int) pair != -1 && (newCostar || pair != scratch.get(i-1))) {
+                        movies.add((int) pair);
+                    }
+                }
+                if (scratch.size() > 0) addLabel(labels, offsets, targets, u, movies);
+                offsets[u+1] = targets.size();
+            }
+
+            return new CSRGraph(names.toArray(new String[0]), actorIds.toArray(), new HashMap<String, Integer>(index),
+                    offsets, targets.toArray(), labels.build(), movieNames.toArray(new String[0]));
+        }
+
+        /**
+         * Pack everything added so far by patching the graph last packed from this builder, instead of packing it
+         * from scratch: only the actors who gained or lost a costar's movie since then are gathered again, from
+         * their old rows and those changes, while every other actor's row and labels are copied over as they are,
+         * and new actors are appended with no costars. The labels a patch replaces stay off the heap, unused, until
+         * a full build, which patch does instead once they reach EdgeLabels.PATCH_LIMIT, and also when something
+         * was added that only a full build packs: a cast added with addCast, a direct edge, or credits both added and
+         * removed.
+         * @param previous - graph last returned by build, patch or reorder
+         * @return - the packed graph, the same graph build() would return
+         */
+        public CSRGraph patch(CSRGraph previous) {
+            if (repack || edgeFrom.size() > 0 || !previous.labels.canPatch()) return build();
+            long start = Metrics.start();
+            int n = names.size(), oldN = previous.numVertices();
+            String[] newNames = Arrays.copyOf(previous.names, n);
+            int[] newIds = Arrays.copyOf(previous.actorIds, n);
+            Map<String, Integer> newIndex = previous.index;
+            if (n > oldN) {
+                //new actors are added to one map that every later patch shares, rather than copied each time
+                if (!(newIndex instanceof ConcurrentHashMap)) newIndex = new ConcurrentHashMap<String, Integer>(newIndex);
+                for (int v = oldN; v < n; v++) {
+                    newNames[v] = names.get(v);
+                    newIds[v] = actorIds.get(v);
+                    newIndex.putIfAbsent(newNames[v], v);
+                }
+            }
+            String[] newMovieNames = movieNames.size() == previous.numMovies() ? previous.movieNames
+                    : movieNames.toArray(new String[0]);
+
+            int[] offsets = new int[n+1];
+            CSRGraph patched;
+            if (gained.isEmpty() && lost.isEmpty()) { //only new actors, with no costars yet
+                System.arraycopy(previous.offsets, 0, offsets, 0, oldN+1);
+                Arrays.fill(offsets, oldN+1, n+1, previous.offsets[oldN]);
+                patched = new CSRGraph(newNames, newIds, newIndex, offsets, previous.targets, previous.labels,
+                        newMovieNames, previous.movieYears);
+            }
+            else {
+                int[] changed = new int[gained.size() + lost.size()];
+                int k = 0;
+                for (int v: gained.keySet()) changed[k++] = v;
+                for (int v: lost.keySet()) changed[k++] = v;
+                Arrays.sort(changed);
+                IntList targets = IntList.of(new int[previous.numEdges() + 1024]), movies = new IntList();
+                targets.clear(); //room for about as many edges as before
+                EdgeLabels.Writer labels = new EdgeLabels.Writer(previous.labels);
+                for (int u = 0, next = 0; u < n; u++) {
+                    int oldStart = u < oldN ? previous.offsets[u] : 0, oldEnd = u < oldN ? previous.offsets[u+1] : 0;
+                    if (next < changed.length && changed[next] == u) {
+                        while (next < changed.length && changed[next] == u) next++;
+                        patchRow(previous, u, oldStart, oldEnd, labels, offsets, targets, movies);
+                    }
+                    else { //copy the rows up to the next actor that changed, whole
+                        int end = Math.min(next < changed.length ? changed[next] : n, oldN);
+                        if (end > u) {
+                            int from = previous.offsets[u], to = previous.offsets[end];
+                            targets.addAll(previous.targets, from, to);
+                            labels.keep(previous.labels, from, to);
+                            for (int v = u; v < end; v++) {
+                                offsets[v+1] = previous.offsets[v+1] - from + offsets[u];
+                            }
+                            u = end - 1;
+                            continue;
+                        }
+                    }
+                    offsets[u+1] = targets.size();
+                }
+                patched = new CSRGraph(newNames, newIds, newIndex, offsets, targets.toArray(), labels.build(),
+                        newMovieNames, previous.movieYears);
+            }
+            changesPacked();
+            if (Metrics.ENABLED) Metrics.time("update.patch", start);
+            return patched;
+        }
+
+        /**
+         * Helper function for patch: write the row of an actor who gained or lost movies with some costars, keeping
+         * the labels of the edges to everyone else
+         * @param previous - graph being patched
+         * @param u - vertex index of the actor
+         * @param oldStart - first edge slot of u in previous (0 for a new actor)
+         * @param oldEnd - one past the last edge slot of u in previous
+         * @param labels - labels written so far, one per edge slot before this row
+         * @param offsets - offsets of the actors before u
+         * @param targets - targets written so far
+         * @param movies - scratch list for one edge's movies
+         */
+        private void patchRow(CSRGraph previous, int u, int oldStart, int oldEnd, EdgeLabels.Writer labels,
+                              int[] offsets, IntList targets, IntList movies) {
+            LongList add = gained.getOrDefault(u, new LongList()), remove = lost.getOrDefault(u, new LongList());
+            add.sort();
+            remove.sort();
+            int e = oldStart, a = 0, r = 0;
+            while (e < oldEnd || a < add.size() || r < remove.size()) { //costars in increasing order
+                int v = Integer.MAX_VALUE;
+                if (e < oldEnd) v = previous.targets[e];
+                if (a < add.size()) v = Math.min(v, (int) (add.get(a) >>> 32));
+                if (r < remove.size()) v = Math.min(v, (int) (remove.get(r) >>> 32));
+                boolean had = e < oldEnd && previous.targets[e] == v;
+                if (!(a < add.size() && (int) (add.get(a) >>> 32) == v)
+                        && !(r < remove.size() && (int) (remove.get(r) >>> 32) == v)) {
+                    targets.add(v); //nothing changed with this costar
+                    labels.keep(previous.labels.positionOf(e++));
+                    continue;
+                }
+                movies.clear();
+                if (had) {
+                    for (int m: previous.labels.movies(e)) movies.add(m);
+                    e++;
+                }
+                for (; a < add.size() && (int) (add.get(a) >>> 32) == v; a++) {
+                    movies.add((int) add.get(a));
+                }
+                movies.sortDistinct();
+                int kept = 0;
+                for (int i = 0; i < movies.size(); i++) { //drop the movies lost with v
+                    while (r < remove.size() && (int) (remove.get(r) >>> 32) == v && (int) remove.get(r) < movies.get(i)) r++;
+                    if (r < remove.size() && (int) (remove.get(r) >>> 32) == v && (int) remove.get(r) == movies.get(i)) continue;
+                    movies.set(kept++, movies.get(i));
+                }
+                movies.truncate(kept);
+                while (r < remove.size() && (int) (remove.get(r) >>> 32) == v) r++;
+                if (movies.size() > 0) {
+                    targets.add(v);
+                    addLabel(labels, offsets, targets, u, movies);
+                }
+            }
+        }
+
+        /**
+         * forget the changes recorded for patch, once a graph holding them has been packed
+         */
+        private void changesPacked() {
+            gained.clear();
+            lost.clear();
+            repack = false;
+        }
+
+        /**
+         * Helper function for build: label the edge just added, from u to the last target, sharing the label of the
+         * other direction when that edge was already built (its source is lower) with the same movies
+         * @param labels - labels written so far, one per edge slot before this one
+         * @param offsets - offsets of the actors before u
+         * @param targets - targets written so far, ending with this edge's
+         * @param u - source of the edge
+         * @param movies - dense movie indices on the edge, sorted and distinct
+         */
+        private static void addLabel(EdgeLabels.Writer labels, int[] offsets, IntList targets, int u, IntList movies) {
+            int v = targets.get(targets.size() - 1);
+            int reverse = -1;
+            if (v < u) { //binary search v's finished targets for u
+                int lo = offsets[v], hi = offsets[v+1] - 1;
+                while (lo <= hi && reverse < 0) {
+                    int mid = (lo + hi) >>> 1;
+                    if (targets.get(mid) < u) lo = mid + 1;
+                    else if (targets.get(mid) > u) hi = mid - 1;
+                    else reverse = mid;
+                }
+            }
+            if (reverse >= 0) labels.share(reverse, movies);
+            else labels.add(movies);
+        }
+
+        /**
+         * Pack the casts added so far into a BipartiteGraph, which keeps actor -> movies and movie -> actors lists and
+         * never materializes costar edges. Edges added with addDirected or addCostars can't be represented this way.
+         * @return - the packed graph
+         * @throws IllegalStateException if any edges were added directly
+         */
+        public BipartiteGraph buildBipartite() {
+            if (edgeFrom.size() > 0) {
+                throw new IllegalStateException("Directly added edges can't be stored in a bipartite graph");
+            }
+            int n = names.size(), movies = movieNames.size();
+            int[] creditStart = new int[n+1];
+            int[] credits = castsByActor(creditStart);
+
+            int[] actorMovieOffsets = new int[n+1];
+            IntList actorMovies = new IntList();
+            IntList scratch = new IntList();
+            for (int u = 0; u < n; u++) {
+                scratch.clear();
+                for (int i = creditStart[u]; i < creditStart[u+1]; i++) {
+                    scratch.add(castMovie.get(credits[i]));
+                }
+                scratch.sortDistinct();
+                for (int i = 0; i < scratch.size(); i++) {
+                    actorMovies.add(scratch.get(i));
+                }
+                actorMovieOffsets[u+1] = actorMovies.size();
+            }
+
+            int[] movieActorOffsets = new int[movies+1]; //transpose of actorMovies, so each cast comes out sorted
+            for (int i = 0; i < actorMovies.size(); i++) {
+                movieActorOffsets[actorMovies.get(i)+1]++;
+            }
+            for (int m = 0; m < movies; m++) {
+                movieActorOffsets[m+1] += movieActorOffsets[m];
+            }
+            int[] movieActors = new int[actorMovies.size()];
+            int[] fill = Arrays.copyOf(movieActorOffsets, movies);
+            for (int u = 0; u < n; u++) {
+                for (int i = actorMovieOffsets[u]; i < actorMovieOffsets[u+1]; i++) {
+                    movieActors[fill[actorMovies.get(i)]++] = u;
+                }
+            }
+
+            return new BipartiteGraph(names.toArray(new String[0]), actorIds.toArray(),
+                    new HashMap<String, Integer>(index), actorMovieOffsets, actorMovies.toArray(), movieActorOffsets,
+                    movieActors, movieNames.toArray(new String[0]));
+        }
+
+        /**
+         * Counting-sort the explicitly added edges by source vertex
+         * @param bucketStart - filled with the first position of each vertex's edges (length numVertices+1)
+         * @return - (target << 32) | movie of every explicit edge, grouped by source
+         */
+        private long[] bucketBySource(int[] bucketStart) {
+            int n = bucketStart.length - 1;
+            for (int i = 0; i < edgeFrom.size(); i++) {
+                bucketStart[edgeFrom.get(i)+1]++;
+            }
+            for (int u = 0; u < n; u++) {
+                bucketStart[u+1] += bucketStart[u];
+            }
+            long[] packed = new long[edgeFrom.size()];
+            int[] fill = Arrays.copyOf(bucketStart, n);
+            for (int i = 0; i < edgeFrom.size(); i++) {
+                packed[fill[edgeFrom.get(i)]++] = ((long) edgeTo.get(i) << 32) | (edgeMovie.get(i) & 0xffffffffL);
+            }
+            return packed;
+        }
+
+        /**
+         * Counting-sort the cast memberships by actor
+         * @param creditStart - filled with the first position of each actor's casts (length numVertices+1)
+         * @return - cast numbers of every actor's casts, grouped by actor
+         */
+        private int[] castsByActor(int[] creditStart) {
+            int n = creditStart.length - 1;
+            for (int i = 0; i < castMembers.size(); i++) {
+                if (castMembers.get(i) >= 0) creditStart[castMembers.get(i)+1]++;
+            }
+            for (int u = 0; u < n; u++) {
+                creditStart[u+1] += creditStart[u];
+            }
+            int[] credits = new int[creditStart[n]];
+            int[] fill = Arrays.copyOf(creditStart, n);
+            for (int c = 0; c < castMovie.size(); c++) {
+                for (int j = castOffsets.get(c); j < castOffsets.get(c+1); j++) {
+                    if (castMembers.get(j) >= 0) credits[fill[castMembers.get(j)]++] = c;
+                }
+            }
+            return credits;
+        }
+    }
+
+    /**
+     * Growable int array, so the builder's buffers hold primitives instead of boxed Integers
+     */
+    static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        /**
+         * wrap an array (without copying) as a list holding all of its values
+         */
+        static IntList of(int[] values) {
+            IntList list = new IntList();
+            list.values = values.length == 0 ? new int[16] : values;
+            list.size = values.length;
+            return list;
+        }
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        /**
+         * add values[from] .. values[to-1] of an array
+         */
+        void addAll(int[] source, int from, int to) {
+            if (size + (to - from) > values.length) {
+                values = Arrays.copyOf(values, (int) Math.min(Math.max(size * 2L, size + (to - from)), Integer.MAX_VALUE - 8));
+            }
+            System.arraycopy(source, from, values, size, to - from);
+            size += to - from;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        void set(int i, int v) {
+            values[i] = v;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * keep only the first size values
+         */
+        void truncate(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return - whether a sorted list holds v, by binary search
+         */
+        boolean containsSorted(int v) {
+            return Arrays.binarySearch(values, 0, size, v) >= 0;
+        }
+
+        /**
+         * sort the values and drop repeats
+         */
+        void sortDistinct() {
+            Arrays.sort(values, 0, size);
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || values[i] != values[i-1]) values[kept++] = values[i];
+            }
+            size = kept;
+        }
+
+        /**
+         * replace every value v with map[v], leaving negative values alone
+         */
+        void replaceAll(int[] map) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] >= 0) values[i] = map[values[i]];
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Growable long array, used as the per-actor scratch buffer while building
+     */
+    static class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+    }
+}
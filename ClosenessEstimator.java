@@ -0,0 +1,189 @@
+import java.util.Random;
+
+/**
+ * Approximate average separation (closeness) of every actor in one connected component, estimated from BFS runs out
+ * of a random sample of pivot actors instead of a BFS from every actor.
+ *
+ * An actor's average separation is its mean distance to the other actors of its component, so the mean of its
+ * distances to a uniform sample of pivots (drawn without replacement) estimates it without bias. Each estimate comes
+ * with a confidence interval, the tighter of a Hoeffding bound and an empirical Bernstein bound on that mean, using
+ * twice a pivot's eccentricity as the range of any distance in the component. The interval holds for each actor
+ * separately with the requested confidence, and shrinks to the exact value once every actor has been a pivot.
+ *
+ * Pivots are added with refine, 64 per sweep of multiSourceBfs, so callers can refine progressively until the
+ * intervals answer their question.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class ClosenessEstimator {
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+
+    private CSRGraph graph;     //graph being estimated
+    private int[] members;      //vertex indices of the component in random order; the first sampled are the pivots
+    private int sampled;        //number of pivots searched so far
+    private long[] totals;      //vertex index -> sum of its distances from the pivots
+    private long[] squares;     //vertex index -> sum of the squares of its distances from the pivots
+    private int rangeBound;     //no two actors of the component are further apart than this
+    private double logTerm;     //ln(4/(1-confidence)), each of the two bounds gets half the failure probability
+
+    /**
+     * @param components - component labels of the graph to estimate
+     * @param component - ID of the component whose actors are estimated, or -1 for none
+     * @param confidence - probability that each actor's interval contains its true average separation
+     * @param seed - seed for the random choice of pivots
+     */
+    public ClosenessEstimator(ComponentIndex components, int component, double confidence, long seed) {
+        graph = components.getGraph();
+        members = components.members(component);
+        Random random = new Random(seed);
+        for (int i = members.length-1; i > 0; i--) { //shuffle, so any prefix is a uniform sample
+            int j = random.nextInt(i+1);
+            int t = members[i];
+            members[i] = members[j];
+            members[j] = t;
+        }
+        totals = new long[graph.numVertices()];
+        squares = new long[graph.numVertices()];
+        rangeBound = Integer.MAX_VALUE;
+        logTerm = Math.log(4 / (1 - confidence));
+    }
+
+    /**
+     * search from more pivots, tightening every actor's interval
+     * @param pivots - number of pivots to add (fewer if the component runs out of actors)
+     * @param threads - number of worker threads to use
+     */
+    public void refine(int pivots, int threads) {
+        int count = Math.min(pivots, members.length - sampled);
+        if (count <= 0) return;
+        int eccentricity = GraphLibrary.pivotDistances(graph, members, sampled, count, totals, squares, threads);
+        rangeBound = Math.min(rangeBound, 2 * eccentricity);
+        sampled += count;
+    }
+
+    /**
+     * @return - number of pivots searched so far
+     */
+    public int sampleCount() {
+        return sampled;
+    }
+
+    /**
+     * @return - number of actors in the component
+     */
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * @return - true once every actor of the component has been a pivot, so the estimates are exact
+     */
+    public boolean isExact() {
+        return sampled == members.length;
+    }
+
+    /**
+     * @param i - position, 0 to size()-1
+     * @return - vertex index of an actor of the component
+     */
+    public int memberAt(int i) {
+        return members[i];
+    }
+
+    /**
+     * @param v - vertex index of an actor of the component
+     * @return - estimated average separation of v (NaN if the component has only v, as in averageSeparation)
+     */
+    public double estimate(int v) {
+        if (members.length < 2 || sampled == 0) return Double.NaN;
+        double mean = (double) totals[v] / sampled * members.length / (members.length - 1);
+        return isExact() ? mean : Math.max(1, Math.min(rangeBound, mean));
+    }
+
+    /**
+     * @param v - vertex index of an actor of the component
+     * @return - lower end of v's confidence interval
+     */
+    public double lowerBound(int v) {
+        return isExact() ? estimate(v) : Math.max(1, estimate(v) - halfWidth(v));
+    }
+
+    /**
+     * @param v - vertex index of an actor of the component
+     * @return - upper end of v's confidence interval
+     */
+    public double upperBound(int v) {
+        return isExact() ? estimate(v) : Math.min(rangeBound, estimate(v) + halfWidth(v));
+    }
+
+    /**
+     * Helper function for the bounds: half the width of the interval around v's estimate
+     * @param v - vertex index of an actor of the component
+     * @return - the tighter of the Hoeffding and empirical Bernstein half-widths, scaled like the estimate
+     */
+    private double halfWidth(int v) {
+        if (sampled == 0) return Double.POSITIVE_INFINITY;
+        int k = sampled;
+        double width = rangeBound * Math.sqrt(logTerm / (2.0 * k));
+        if (k > 1) {
+            double mean = (double) totals[v] / k;
+            double variance = Math.max(0, (squares[v] - k * mean * mean) / (k - 1));
+            width = Math.min(width, Math.sqrt(2 * variance * logTerm / k) + 7 * rangeBound * logTerm / (3.0 * (k - 1)));
+        }
+        return width * members.length / (members.length - 1);
+    }
+
+    /**
+     * @param k - number of actors wanted
+     * @param best - true for the smallest average separations, false for the largest
+     * @return - vertex indices of the k actors of the component with the best (or worst) estimates, best first
+     */
+    public int[] ranking(int k, boolean best) {
+        double[] estimates = new double[members.length];
+        for (int i = 0; i < members.length; i++) {
+            estimates[i] = estimate(members[i]);
+        }
+        return TopK.select(members, estimates, k, best).vertices();
+    }
+
+    /**
+     * whether a ranking's actors are certain (at the interval's confidence) to be the k best or worst: every one of
+     * their intervals lies strictly on the right side of every interval outside them
+     * @param ranked - ranking from ranking(k, best)
+     * @param best - true if ranked holds the smallest average separations
+     * @return - true if the ranked actors are separated from the rest
+     */
+    public boolean separated(int[] ranked, boolean best) {
+        if (ranked.length >= members.length) return true;
+        boolean[] inside = new boolean[graph.numVertices()];
+        double edge = best ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        for (int v: ranked) { //the weakest edge of the ranked actors
+            inside[v] = true;
+            edge = best ? Math.max(edge, upperBound(v)) : Math.min(edge, lowerBound(v));
+        }
+        for (int v: members) {
+            if (!inside[v] && (best ? lowerBound(v) <= edge : upperBound(v) >= edge)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * refine until the k best (or worst) actors are separated from the rest, or every actor has been a pivot,
+     * doubling the pivots each time
+     * @param k - number of actors wanted
+     * @param best - true for the smallest average separations, false for the largest
+     * @param pivots - number of pivots to sample first
+     * @param threads - number of worker threads to use
+     * @param notSeparated - run before each doubling, e.g. to report progress; may be null
+     * @return - the separated ranking(k, best)
+     */
+    public int[] separatedRanking(int k, boolean best, int pivots, int threads, Runnable notSeparated) {
+        refine(Math.max(1, pivots - sampled), threads);
+        int[] ranked = ranking(k, best);
+        while (!separated(ranked, best) && !isExact()) {
+            if (notSeparated != null) notSeparated.run();
+            refine(sampled, threads);
+            ranked = ranking(k, best);
+        }
+        return ranked;
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Connected component of every actor of a CSRGraph, labeled once with a parallel union-find when the graph is loaded.
+ * Components are numbered 0, 1, 2, ... in order of their smallest vertex index, so whether one actor can reach
+ * another, and how many actors any center can reach, are answered in O(1) without running a BFS.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class ComponentIndex {
+    private CSRGraph graph;     //graph that was labeled
+    private int[] component;    //vertex index -> component ID
+    private int[] sizes;        //component ID -> number of actors in it
+    private int largest;        //ID of the component with the most actors (-1 if there are no actors)
+    private int singletons;     //number of actors with no costars
+
+    /**
+     * @param graph - graph to label
+     * @param threads - number of worker threads to use
+     */
+    public ComponentIndex(CSRGraph graph, int threads) {
+        this(graph, GraphLibrary.componentRoots(graph, threads));
+    }
+
+    /**
+     * @param graph - graph that was labeled
+     * @param roots - vertex index -> smallest vertex index in its connected component
+     */
+    private ComponentIndex(CSRGraph graph, int[] roots) {
+        this.graph = graph;
+        int n = graph.numVertices();
+        component = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) { //a root is the smallest index in its component, so it is numbered first
+            component[v] = roots[v] == v ? count++ : component[roots[v]];
+        }
+        sizes = new int[count];
+        for (int v = 0; v < n; v++) {
+            sizes[component[v]]++;
+        }
+        largest = -1;
+        for (int c = 0; c < count; c++) {
+            if (largest < 0 || sizes[c] > sizes[largest]) largest = c;
+            if (sizes[c] == 1) singletons++;
+        }
+    }
+
+    private ComponentIndex(CSRGraph graph, int[] component, int[] sizes, int largest, int singletons) {
+        this.graph = graph;
+        this.component = component;
+        this.sizes = sizes;
+        this.largest = largest;
+        this.singletons = singletons;
+    }
+
+    /**
+     * Write the labels to a snapshot
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        out.writeInts(component);
+        out.writeInts(sizes);
+        out.writeInt(largest);
+        out.writeInt(singletons);
+    }
+
+    /**
+     * Read the labels written by writeTo
+     * @param in - snapshot being read
+     * @param graph - graph restored from the same snapshot
+     * @return - the restored index
+     * @throws IOException if the snapshot can't be read or doesn't match the graph
+     */
+    static ComponentIndex readFrom(GraphSnapshot.Input in, CSRGraph graph) throws IOException {
+        int[] component = in.readInts(), sizes = in.readInts();
+        int largest = in.readInt(), singletons = in.readInt();
+        if (component.length != graph.numVertices()) throw new IOException("Snapshot components don't match its graph");
+        return new ComponentIndex(graph, component, sizes, largest, singletons);
+    }
+
+    /**
+     * Label a graph that has only gained actors and edges since this one was labeled, without searching it: actors
+     * can only have joined components, so the new labels are the old ones with each new actor on its own and the
+     * components of every new cast merged
+     * @param newGraph - this index's graph plus any number of new actors (at the end) and new edges
+     * @param casts - vertex indices of the actors in each cast whose edges are new
+     * @return - component index over newGraph
+     */
+    public ComponentIndex merged(CSRGraph newGraph, List<int[]> casts) {
+        int n = newGraph.numVertices();
+        int[] firstOf = new int[sizes.length]; //component ID -> its smallest vertex index
+        Arrays.fill(firstOf, -1);
+        int[] roots = new int[n];
+        for (int v = 0; v < n; v++) {
+            if (v >= component.length) {
+                roots[v] = v;
+                continue;
+            }
+            if (firstOf[component[v]] < 0) firstOf[component[v]] = v;
+            roots[v] = firstOf[component[v]];
+        }
+        int[] link = new int[n]; //union-find over the old roots, always hooking the larger root under the smaller
+        for (int v = 0; v < n; v++) {
+            link[v] = v;
+        }
+        for (int[] cast: casts) {
+            for (int i = 1; i < cast.length; i++) {
+                int a = find(link, roots[cast[0]]), b = find(link, roots[cast[i]]);
+                if (a < b) link[b] = a;
+                else if (b < a) link[a] = b;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            roots[v] = find(link, roots[v]);
+        }
+        return new ComponentIndex(newGraph, roots);
+    }
+
+    private static int find(int[] link, int v) {
+        while (link[v] != v) {
+            link[v] = link[link[v]];
+            v = link[v];
+        }
+        return v;
+    }
+
+    /**
+     * @param u - vertex index
+     * @return - component ID of u
+     */
+    public int componentOf(int u) {
+        return component[u];
+    }
+
+    /**
+     * @param actor - actor name
+     * @return - component ID of actor, or -1 if actor is not in the graph
+     */
+    public int componentOf(String actor) {
+        int u = graph.indexOf(actor);
+        return u < 0 ? -1 : component[u];
+    }
+
+    /**
+     * @param c - component ID
+     * @return - number of actors in that component
+     */
+    public int componentSize(int c) {
+        return sizes[c];
+    }
+
+    /**
+     * @param c - component ID, or -1 for none
+     * @return - vertex indices of the actors in that component, in index order
+     */
+    public int[] members(int c) {
+        int[] members = new int[c < 0 ? 0 : sizes[c]];
+        int filled = 0;
+        for (int v = 0; v < component.length && filled < members.length; v++) {
+            if (component[v] == c) members[filled++] = v;
+        }
+        return members;
+    }
+
+    /**
+     * @param actor - actor name
+     * @return - number of actors actor can reach, including itself (0 if actor is not in the graph)
+     */
+    public int reachableCount(String actor) {
+        int c = componentOf(actor);
+        return c < 0 ? 0 : sizes[c];
+    }
+
+    /**
+     * @param u - vertex index
+     * @param v - vertex index
+     * @return - true if there is a path between u and v
+     */
+    public boolean connected(int u, int v) {
+        return component[u] == component[v];
+    }
+
+    /**
+     * @return - number of connected components
+     */
+    public int numComponents() {
+        return sizes.length;
+    }
+
+    /**
+     * @return - ID of the component with the most actors, or -1 if there are no actors
+     */
+    public int largestComponent() {
+        return largest;
+    }
+
+    /**
+     * @return - number of actors who have no costars, each alone in its own component
+     */
+    public int singletonCount() {
+        return singletons;
+    }
+
+    /**
+     * @return - graph that was labeled
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+}
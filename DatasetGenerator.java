@@ -0,0 +1,311 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes synthetic input files in the exact formats BaconGame reads (actors.txt as "actorID|name", movies.txt as
+ * "movieID|title (year)", movie-actors.txt as "movieID|actorID" with each movie's lines together), shaped like the
+ * IMDb data at any size:
+ *
+ *   java DatasetGenerator <directory> <actors> [credits per actor] [seed]
+ *
+ * - Cast sizes follow a power law (most casts are a handful of actors, a few are in the hundreds, up to 1000).
+ * - Careers follow a power law too: most actors work for a year or two, a few for decades. An actor is only cast in
+ *   movies from the years of their career, so long careers make the well-connected hubs and the graph clusters by era.
+ * - The industry grows over time, so later years have more debuts and more movies.
+ * - A few percent of actors belong to small islands who only ever work with each other, and some actors are never
+ *   cast, so there are always actors with infinite separation.
+ *
+ * The generator keeps one byte per actor (career length) plus small per-year tables, and streams every movie and its
+ * credits straight to the files, so memory doesn't grow with the number of credits; hundreds of millions of credits
+ * need no more heap than the actors do. The same seed always writes the same files.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class DatasetGenerator {
+    private static final int FIRST_YEAR = 1900, LAST_YEAR = 2020;
+    private static final int MAX_CAREER = 70;               //years
+    private static final double CAREER_EXPONENT = 2.1;      //power law of career lengths
+    private static final double CAST_EXPONENT = 2.5;        //power law of cast sizes
+    private static final int MIN_CAST = 2, MAX_CAST = 1000; //high enough that the tail reaches the hundreds
+    private static final double GROWTH = 0.035;             //yearly growth of debuts
+    private static final double ISLAND_FRACTION = 0.02;     //share of actors in islands
+    private static final int MAX_ISLAND = 30;               //most actors in one island
+    private static final double DEFAULT_CREDITS_PER_ACTOR = 6;
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+            "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+            "Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark", "Margaret",
+            "Donald", "Sandra", "Steven", "Ashley", "Paul", "Emily", "Andrew", "Donna", "Joshua", "Michelle", "Yuki",
+            "Ana", "Luis", "Sofia", "Mateo", "Camila", "Wei", "Mei", "Arjun", "Priya", "Omar", "Fatima", "Ivan",
+            "Olga", "Pierre", "Amelie", "Hans", "Greta", "Kwame", "Amara", "Diego", "Lucia", "Kenji", "Hana"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Taylor", "Moore",
+            "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis",
+            "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores",
+            "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter", "Roberts", "Kim",
+            "Chen", "Wang", "Singh", "Patel", "Tanaka", "Sato", "Muller", "Schmidt", "Dubois", "Rossi", "Ivanov",
+            "Kowalski", "Silva", "Santos", "Okafor", "Mensah", "Haddad", "Novak", "Larsen", "Jansen", "Costa"};
+    private static final String[] TITLE_WORDS = {"Silent", "River", "Night", "Last", "Summer", "Dark", "City", "Love",
+            "Blood", "Star", "Long", "Road", "Ghost", "Iron", "Lost", "Kingdom", "Broken", "Heart", "Red", "Moon",
+            "Storm", "Secret", "Garden", "Fire", "Winter", "Shadow", "Empire", "Dream", "Wild", "Girl", "Man", "House",
+            "War", "Ocean", "Golden", "Return", "Midnight", "Stranger", "Hunter", "Angel", "Forgotten", "Glass"};
+
+    private Random random;
+    private int mainActors;             //actors cast by year; the islands come after them
+    private int[] yearStart;            //year - FIRST_YEAR -> first actor index of the actors debuting that year
+    private byte[] career;              //actor index -> career length in years, descending within each debut year
+    private long[][] activeBelow;       //year - FIRST_YEAR -> k -> actors active that year who debuted at most k years before
+    private int bacon;                  //actor index named Kevin Bacon
+    private int nextMovie = 1;          //ID of the next movie written
+    private long credits;               //credits written so far
+
+    /**
+     * @param numActors - number of actors to generate
+     * @param seed - random seed
+     */
+    public DatasetGenerator(int numActors, long seed) {
+        random = new Random(seed);
+        mainActors = numActors - (int) (numActors * ISLAND_FRACTION);
+        int years = LAST_YEAR - FIRST_YEAR + 1;
+        yearStart = new int[years + 1];
+        double weight = 0, total = 0;
+        for (int y = 0; y < years; y++) {
+            total += Math.exp(GROWTH * y);
+        }
+        for (int y = 0; y < years; y++) { //debuts grow exponentially with the industry
+            weight += Math.exp(GROWTH * y);
+            yearStart[y+1] = (int) Math.round(mainActors * weight / total);
+        }
+
+        career = new byte[numActors];
+        for (int y = 0; y < years; y++) {
+            int from = yearStart[y], to = yearStart[y+1];
+            for (int a = from; a < to; a++) {
+                career[a] = (byte) powerLaw(CAREER_EXPONENT, 1, MAX_CAREER);
+            }
+            Arrays.sort(career, from, to);
+            for (int i = from, j = to-1; i < j; i++, j--) { //longest careers first
+                byte t = career[i];
+                career[i] = career[j];
+                career[j] = t;
+            }
+        }
+        bacon = Math.min(yearStart[1978 - FIRST_YEAR], mainActors - 1); //the longest career of 1978's debuts
+        career[bacon] = (byte) Math.max(career[bacon], 45);
+
+        activeBelow = new long[years][MAX_CAREER];
+        for (int y = 0; y < years; y++) {
+            long active = 0;
+            for (int k = 0; k < MAX_CAREER; k++) {
+                if (y - k >= 0) active += activeCount(y - k, k);
+                activeBelow[y][k] = active;
+            }
+        }
+    }
+
+    /**
+     * @param debut - debut year - FIRST_YEAR
+     * @param k - years since the debut
+     * @return - number of actors debuting that year whose careers last more than k years
+     */
+    private int activeCount(int debut, int k) {
+        int lo = yearStart[debut], hi = yearStart[debut+1]; //careers are descending, so the active are a prefix
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (career[mid] > k) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo - yearStart[debut];
+    }
+
+    /**
+     * @param exponent - power law exponent, above 1
+     * @param min - smallest value
+     * @param max - largest value
+     * @return - a random integer from min to max with P(x) roughly proportional to x^-exponent
+     */
+    private int powerLaw(double exponent, int min, int max) {
+        double x = min * Math.pow(1 - random.nextDouble(), -1 / (exponent - 1));
+        return (int) Math.min(max, Math.floor(x));
+    }
+
+    /**
+     * @param index - actor index
+     * @return - the actor's name, unique to the index
+     */
+    private String nameOf(int index) {
+        if (index == bacon) return "Kevin Bacon";
+        int names = FIRST_NAMES.length * LAST_NAMES.length;
+        String name = FIRST_NAMES[index % FIRST_NAMES.length] + " " + LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length];
+        return index < names ? name : name + " (" + (index / names + 1) + ")"; //as IMDb tells namesakes apart
+    }
+
+    /**
+     * write the three input files
+     * @param dir - directory to write actors.txt, movies.txt and movie-actors.txt in
+     * @param creditsPerActor - average number of credits per actor
+     * @throws IOException if a file can't be written
+     */
+    public void write(File dir, double creditsPerActor) throws IOException {
+        dir.mkdirs();
+        try (Writer actors = writer(new File(dir, "actors.txt"))) {
+            StringBuilder line = new StringBuilder();
+            for (int a = 0; a < career.length; a++) {
+                line.setLength(0);
+                line.append(a + 1).append('|').append(nameOf(a)).append('\n');
+                actors.append(line);
+            }
+        }
+        try (Writer movies = writer(new File(dir, "movies.txt"));
+             Writer movieActors = writer(new File(dir, "movie-actors.txt"))) {
+            long target = (long) (career.length * creditsPerActor);
+            long allActive = 0;
+            for (long[] year: activeBelow) {
+                allActive += year[MAX_CAREER-1];
+            }
+            int[] cast = new int[MAX_CAST];
+            long islandCredits = (long) (target * ISLAND_FRACTION);
+            for (int y = 0; y < activeBelow.length; y++) { //the year's share of credits, by how many actors are working
+                long yearCredits = (target - islandCredits) * activeBelow[y][MAX_CAREER-1] / Math.max(1, allActive);
+                long written = 0;
+                while (written < yearCredits) {
+                    int size = Math.min(powerLaw(CAST_EXPONENT, MIN_CAST, MAX_CAST), (int) activeBelow[y][MAX_CAREER-1]);
+                    for (int c = 0; c < size; c++) {
+                        cast[c] = castMember(y, cast, c);
+                    }
+                    writeMovie(movies, movieActors, FIRST_YEAR + y, cast, size);
+                    written += size;
+                }
+            }
+            writeIslands(movies, movieActors, cast, islandCredits);
+        }
+    }
+
+    /**
+     * Helper function for write: draw an actor working in a year, uniformly among them, who isn't in the cast yet
+     * @param y - year - FIRST_YEAR
+     * @param cast - the cast so far
+     * @param size - number of actors in the cast so far
+     * @return - actor index
+     */
+    private int castMember(int y, int[] cast, int size) {
+        long[] active = activeBelow[y];
+        while (true) {
+            long r = (long) (random.nextDouble() * active[MAX_CAREER-1]);
+            int lo = 0, hi = MAX_CAREER-1; //years since debut: the first whose running count passes r
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (active[mid] > r) hi = mid;
+                else lo = mid + 1;
+            }
+            int debut = y - lo;
+            int actor = yearStart[debut] + random.nextInt(activeCount(debut, lo));
+            boolean repeat = false;
+            for (int c = 0; c < size && !repeat; c++) {
+                repeat = cast[c] == actor;
+            }
+            if (!repeat) return actor;
+        }
+    }
+
+    /**
+     * Helper function for write: the islands, small groups at the end of the actors who only work with each other
+     * @param movies - movies.txt
+     * @param movieActors - movie-actors.txt
+     * @param cast - room for a cast
+     * @param islandCredits - number of credits to share out among the islands
+     * @throws IOException if a file can't be written
+     */
+    private void writeIslands(Writer movies, Writer movieActors, int[] cast, long islandCredits) throws IOException {
+        int start = mainActors;
+        long written = 0;
+        while (start < career.length) {
+            int size = Math.min(career.length - start, 2 + random.nextInt(MAX_ISLAND - 1));
+            long groupCredits = Math.max(1, islandCredits * size / Math.max(1, career.length - mainActors));
+            int year = FIRST_YEAR + random.nextInt(LAST_YEAR - FIRST_YEAR + 1);
+            for (long c = 0; c < groupCredits && written < islandCredits; ) {
+                int castSize = 1 + random.nextInt(size);
+                for (int i = 0; i < castSize; i++) {
+                    cast[i] = start + random.nextInt(size);
+                }
+                castSize = distinct(cast, castSize);
+                writeMovie(movies, movieActors, year, cast, castSize);
+                c += castSize;
+                written += castSize;
+            }
+            start += size;
+        }
+    }
+
+    /**
+     * @param cast - actor indices
+     * @param size - number of them to look at
+     * @return - number left after removing repeats, moved to the front
+     */
+    private static int distinct(int[] cast, int size) {
+        Arrays.sort(cast, 0, size);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (n == 0 || cast[n-1] != cast[i]) cast[n++] = cast[i];
+        }
+        return n;
+    }
+
+    /**
+     * Helper function for write: write a movie with a made up title and its cast's credits
+     * @param movies - movies.txt
+     * @param movieActors - movie-actors.txt
+     * @param year - year the movie came out
+     * @param cast - actor indices of the cast
+     * @param size - number of actors in the cast
+     * @throws IOException if a file can't be written
+     */
+    private void writeMovie(Writer movies, Writer movieActors, int year, int[] cast, int size) throws IOException {
+        int id = nextMovie++;
+        StringBuilder line = new StringBuilder(64);
+        line.append(id).append('|');
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) line.append(' ');
+            line.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        movies.append(line.append(" (").append(year).append(")\n"));
+        line.setLength(0);
+        for (int c = 0; c < size; c++) {
+            line.append(id).append('|').append(cast[c] + 1).append('\n');
+        }
+        movieActors.append(line);
+        credits += size;
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    /**
+     * @return - number of movies written
+     */
+    public int getMovieCount() {
+        return nextMovie - 1;
+    }
+
+    /**
+     * @return - number of credits written
+     */
+    public long getCreditCount() {
+        return credits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java DatasetGenerator <directory> <actors> [credits per actor] [seed]");
+            return;
+        }
+        int numActors = Integer.parseInt(args[1]);
+        double creditsPerActor = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_CREDITS_PER_ACTOR;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        DatasetGenerator generator = new DatasetGenerator(numActors, seed);
+        generator.write(new File(args[0]), creditsPerActor);
+        System.out.println("Wrote " + numActors + " actors, " + generator.getMovieCount() + " movies and "
+                + generator.getCreditCount() + " credits to " + args[0]);
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Actors of a CSRGraph ordered by degree, built once with a counting sort, and after an update by merging the actors
+ * whose degree changed back in. Actors with the same degree sit in one contiguous bucket (in vertex index order), so
+ * all actors with degree in [low, high] are the single slice rangeStart(low) .. rangeEnd(high)-1 of the order, found
+ * in O(1) without scanning or sorting.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class DegreeIndex {
+    private CSRGraph graph;     //graph that was indexed
+    private int[] byDegree;     //vertex indices sorted by increasing degree
+    private int[] bucketStart;  //degree d -> first position of degree-d actors in byDegree (length maxDegree+2)
+
+    /**
+     * @param graph - graph to index
+     */
+    public DegreeIndex(CSRGraph graph) {
+        this.graph = graph;
+        int n = graph.numVertices();
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxDegree = Math.max(maxDegree, graph.degree(v));
+        }
+        bucketStart = new int[maxDegree+2];
+        for (int v = 0; v < n; v++) {
+            bucketStart[graph.degree(v)+1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            bucketStart[d+1] += bucketStart[d];
+        }
+        byDegree = new int[n];
+        int[] fill = new int[maxDegree+1];
+        System.arraycopy(bucketStart, 0, fill, 0, maxDegree+1);
+        for (int v = 0; v < n; v++) {
+            byDegree[fill[graph.degree(v)]++] = v;
+        }
+    }
+
+    private DegreeIndex(CSRGraph graph, int[] byDegree, int[] bucketStart) {
+        this.graph = graph;
+        this.byDegree = byDegree;
+        this.bucketStart = bucketStart;
+    }
+
+    /**
+     * Write the order to a snapshot
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        out.writeInts(byDegree);
+        out.writeInts(bucketStart);
+    }
+
+    /**
+     * Read the order written by writeTo
+     * @param in - snapshot being read
+     * @param graph - graph restored from the same snapshot
+     * @return - the restored index
+     * @throws IOException if the snapshot can't be read or doesn't match the graph
+     */
+    static DegreeIndex readFrom(GraphSnapshot.Input in, CSRGraph graph) throws IOException {
+        int[] byDegree = in.readInts(), bucketStart = in.readInts();
+        if (byDegree.length != graph.numVertices()) throw new IOException("Snapshot degree order doesn't match its graph");
+        return new DegreeIndex(graph, byDegree, bucketStart);
+    }
+
+    /**
+     * Index a graph that differs from this index's graph only in the degrees of some actors and in new actors at the
+     * end, without sorting every actor again: the actors that changed are sorted by their new degree and merged back
+     * into the order of the rest, which is still right
+     * @param newGraph - this index's graph with some actors' costars changed, and any number of new actors
+     * @param changed - vertex indices of every actor whose degree may have changed, repeats allowed
+     * @return - the index new DegreeIndex(newGraph) would build
+     */
+    public DegreeIndex updated(CSRGraph newGraph, int[] changed) {
+        int n = newGraph.numVertices(), oldN = byDegree.length;
+        boolean[] moved = new boolean[n];
+        long[] keys = new long[changed.length + n - oldN]; //(new degree, vertex) of the actors that move
+        int k = 0;
+        for (int v: changed) {
+            if (v < oldN && !moved[v]) {
+                moved[v] = true;
+                keys[k++] = ((long) newGraph.degree(v) << 32) | v;
+            }
+        }
+        for (int v = oldN; v < n; v++) {
+            keys[k++] = ((long) newGraph.degree(v) << 32) | v;
+        }
+        keys = Arrays.copyOf(keys, k);
+        Arrays.sort(keys);
+
+        int maxDegree = 0; //of the actors that stay, then of everyone
+        for (int d = maxDegree(); d > 0 && maxDegree == 0; d--) {
+            for (int i = bucketStart[d]; i < bucketStart[d+1] && maxDegree == 0; i++) {
+                if (!moved[byDegree[i]]) maxDegree = d;
+            }
+        }
+        if (k > 0) maxDegree = Math.max(maxDegree, (int) (keys[k-1] >>> 32));
+        int[] newBucketStart = new int[maxDegree+2], newByDegree = new int[n];
+        int next = 0, key = 0;
+        for (int d = 0; d <= maxDegree; d++) {
+            newBucketStart[d] = next;
+            if (d <= maxDegree()) {
+                for (int i = bucketStart[d]; i < bucketStart[d+1]; i++) {
+                    int v = byDegree[i];
+                    if (moved[v]) continue;
+                    for (; key < k && keys[key] < (((long) d << 32) | v); key++) {
+                        newByDegree[next++] = (int) keys[key];
+                    }
+                    newByDegree[next++] = v;
+                }
+            }
+            for (; key < k && (keys[key] >>> 32) == d; key++) {
+                newByDegree[next++] = (int) keys[key];
+            }
+        }
+        newBucketStart[maxDegree+1] = next;
+        return new DegreeIndex(newGraph, newByDegree, newBucketStart);
+    }
+
+    /**
+     * @return - largest degree of any actor
+     */
+    public int maxDegree() {
+        return bucketStart.length - 2;
+    }
+
+    /**
+     * @param low - smallest degree wanted
+     * @return - position in the order of the first actor with degree >= low
+     */
+    public int rangeStart(int low) {
+        return bucketStart[Math.max(0, Math.min(low, maxDegree()+1))];
+    }
+
+    /**
+     * @param high - largest degree wanted
+     * @return - position in the order one past the last actor with degree <= high
+     */
+    public int rangeEnd(int high) {
+        return high < 0 ? 0 : bucketStart[Math.min(high, maxDegree())+1];
+    }
+
+    /**
+     * @param low - smallest degree wanted
+     * @param high - largest degree wanted
+     * @return - number of actors with degree between low and high
+     */
+    public int count(int low, int high) {
+        return Math.max(0, rangeEnd(high) - rangeStart(low));
+    }
+
+    /**
+     * @param i - position in the order
+     * @return - vertex index of the actor at that position
+     */
+    public int vertexAt(int i) {
+        return byDegree[i];
+    }
+
+    /**
+     * @param i - position in the order
+     * @return - degree of the actor at that position
+     */
+    public int degreeAt(int i) {
+        return graph.degree(byDegree[i]);
+    }
+
+    /**
+     * @return - graph that was indexed
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The movies on every edge of a CSRGraph, kept off the Java heap in direct buffers: one int per edge slot giving
+ * where its label starts, and the labels themselves, each a varint count followed by the varint gaps between its
+ * sorted dense movie indices. Both directions of an undirected edge point at the same label, so each label is stored
+ * once, and most take two or three bytes instead of an int per movie per direction.
+ *
+ * Off the heap, the labels add nothing for the garbage collector to copy or mark, and the heap shrinks to the
+ * vertices and adjacency. Labels are decoded only when asked for - a count for most searches, the movies themselves
+ * only for the few edges a path prints or a year window filters.
+ *
+ * A direct buffer holds at most 2 GiB, so both are split into chunks of 1 GiB: positions by edge slot, and labels by
+ * byte position, never splitting a label between two chunks. A position is read as an unsigned int, which lets the
+ * labels take up to MAX_LABEL_BYTES; a graph whose labels need more fails to build instead of wrapping around.
+ *
+ * A graph patched after an update (CSRGraph.Builder.patch) shares every chunk of the labels it was patched from
+ * except the last one written by a patch, which it copies and adds its new labels to.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class EdgeLabels {
+    static final int CHUNK_BITS = 30;                       //each buffer holds at most 2^30 bytes
+    static final long MAX_LABEL_BYTES = 1L << 32;           //label positions are unsigned ints
+    static final int PATCH_LIMIT = 1 << 26;                 //bytes patches may add before the graph is packed again
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int SLOT_BITS = CHUNK_BITS - 2;    //edge slots per positions chunk, as a power of 2
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    private ByteBuffer[] positions; //edge slot -> byte position of its label in labels, 4 bytes per slot
+    private ByteBuffer[] labels;    //each label: varint count, then varint gaps between its sorted movie indices
+    private int sealed;             //chunks of labels a patch shares as they are; any after them are copied
+
+    private EdgeLabels(ByteBuffer[] positions, ByteBuffer[] labels, int sealed) {
+        this.positions = positions;
+        this.labels = labels;
+        this.sealed = sealed;
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - number of movies on the edge
+     */
+    public int size(int e) {
+        return (int) varint(labels, position(positions, e));
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - dense movie indices on the edge, in increasing order
+     */
+    public int[] movies(int e) {
+        return movies(labels, position(positions, e));
+    }
+
+    /**
+     * @param labels - labels chunks
+     * @param position - byte position of a label, across all the chunks
+     * @return - dense movie indices of the label, in increasing order
+     */
+    private static int[] movies(ByteBuffer[] labels, long position) {
+        ByteBuffer chunk = labels[(int) (position >>> CHUNK_BITS)];
+        long read = varint(chunk, (int) position & (CHUNK - 1));
+        int[] movies = new int[(int) read];
+        int movie = 0;
+        for (int i = 0; i < movies.length; i++) {
+            read = varint(chunk, (int) (read >>> 32));
+            movie += (int) read;
+            movies[i] = movie;
+        }
+        return movies;
+    }
+
+    /**
+     * @param e - edge slot
+     * @param years - dense movie index -> release year
+     * @param from - first year that counts
+     * @param to - last year that counts
+     * @return - number of movies on the edge released from..to
+     */
+    public int countInYears(int e, short[] years, int from, int to) {
+        long position = position(positions, e);
+        ByteBuffer chunk = labels[(int) (position >>> CHUNK_BITS)];
+        long read = varint(chunk, (int) position & (CHUNK - 1));
+        int size = (int) read, count = 0, movie = 0;
+        for (int i = 0; i < size; i++) {
+            read = varint(chunk, (int) (read >>> 32));
+            movie += (int) read;
+            if (years[movie] != 0 && years[movie] >= from && years[movie] <= to) count++;
+        }
+        return count;
+    }
+
+    /**
+     * the labels of a graph whose edge slots were moved, sharing the labels themselves with this one
+     * @param oldSlots - new edge slot -> the slot it was moved from
+     * @return - labels for the new slots
+     */
+    EdgeLabels permuted(int[] oldSlots) {
+        ByteBuffer[] moved = allocatePositions(oldSlots.length);
+        for (int e = 0; e < oldSlots.length; e++) {
+            moved[e >>> SLOT_BITS].putInt((e & SLOT_MASK) << 2, positions[oldSlots[e] >>> SLOT_BITS]
+                    .getInt((oldSlots[e] & SLOT_MASK) << 2));
+        }
+        return new EdgeLabels(moved, labels, sealed);
+    }
+
+    /**
+     * @param e - edge slot
+     * @return - position of the slot's label, for a Writer patching these labels to keep
+     */
+    int positionOf(int e) {
+        return positions[e >>> SLOT_BITS].getInt((e & SLOT_MASK) << 2);
+    }
+
+    /**
+     * @return - whether a Writer can patch these labels: there is room for another chunk, and the labels earlier
+     * patches added are under PATCH_LIMIT
+     */
+    boolean canPatch() {
+        return sealed < MAX_LABEL_BYTES >>> CHUNK_BITS && (labels.length == sealed || labels[sealed].capacity() < PATCH_LIMIT);
+    }
+
+    /**
+     * @return - bytes held off the heap
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer b: positions) bytes += b.capacity();
+        for (ByteBuffer b: labels) bytes += b.capacity();
+        return bytes;
+    }
+
+    /**
+     * Helper function for decoding: find where an edge slot's label starts
+     * @param positions - positions chunks
+     * @param e - edge slot
+     * @return - byte position of the label, across all the labels chunks
+     */
+    private static long position(ByteBuffer[] positions, int e) {
+        return positions[e >>> SLOT_BITS].getInt((e & SLOT_MASK) << 2) & 0xffffffffL;
+    }
+
+    /**
+     * Helper function for decoding: read the count at the start of a label
+     * @param labels - labels chunks
+     * @param position - byte position of the label, across all the chunks
+     * @return - as varint(chunk, offset), in the label's chunk
+     */
+    private static long varint(ByteBuffer[] labels, long position) {
+        return varint(labels[(int) (position >>> CHUNK_BITS)], (int) position & (CHUNK - 1));
+    }
+
+    /**
+     * Helper function for decoding: read the varint at a position
+     * @param b - buffer to read
+     * @param position - where the varint starts
+     * @return - the value in the low 32 bits, and the position after it in the high 32 bits
+     */
+    private static long varint(ByteBuffer b, int position) {
+        int value = 0, shift = 0;
+        byte next;
+        do {
+            next = b.get(position++);
+            value |= (next & 0x7f) << shift;
+            shift += 7;
+        } while (next < 0);
+        return ((long) position << 32) | (value & 0xffffffffL);
+    }
+
+    /**
+     * @param slots - number of edge slots
+     * @return - direct buffers with room for a position per slot, full chunks then the rest
+     */
+    private static ByteBuffer[] allocatePositions(int slots) {
+        ByteBuffer[] chunks = new ByteBuffer[(int) ((slots + (long) SLOT_MASK) >>> SLOT_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            int chunkSlots = Math.min(slots - (i << SLOT_BITS), 1 << SLOT_BITS);
+            chunks[i] = ByteBuffer.allocateDirect(chunkSlots << 2);
+        }
+        return chunks;
+    }
+
+    /**
+     * Write the buffers to a snapshot
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        for (ByteBuffer[] buffers: Arrays.asList(positions, labels)) {
+            out.writeInt(buffers.length);
+            for (ByteBuffer b: buffers) {
+                out.writeBuffer(b);
+            }
+        }
+    }
+
+    /**
+     * Read the buffers written by writeTo straight into new direct buffers
+     * @param in - snapshot being read
+     * @param edges - number of edge slots the labels must cover
+     * @return - the restored labels
+     * @throws IOException if the snapshot can't be read or has a different number of edges
+     */
+    static EdgeLabels readFrom(GraphSnapshot.Input in, int edges) throws IOException {
+        ByteBuffer[] positions = new ByteBuffer[in.readInt()];
+        long slots = 0;
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = in.readDirect();
+            if (i < positions.length - 1 && positions[i].capacity() != CHUNK) { //only the last chunk may be short
+                throw new IOException("Snapshot labels don't match its edges");
+            }
+            slots += positions[i].capacity() >>> 2;
+        }
+        if (slots != edges) throw new IOException("Snapshot labels don't match its edges");
+        ByteBuffer[] labels = new ByteBuffer[in.readInt()];
+        if ((long) labels.length << CHUNK_BITS > MAX_LABEL_BYTES) throw new IOException("Snapshot labels are too big");
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = in.readDirect();
+        }
+        return new EdgeLabels(positions, labels, labels.length);
+    }
+
+    /**
+     * Encodes labels edge slot by edge slot, in heap chunks that build() copies off the heap once
+     */
+    static class Writer {
+        private ByteBuffer[] shared = new ByteBuffer[0];       //chunks of the labels being patched, kept as they are
+        private boolean patching;                               //whether this started from labels to patch
+        private List<byte[]> done = new ArrayList<byte[]>();    //full chunks of labels
+        private CSRGraph.IntList doneLength = new CSRGraph.IntList();   //bytes used of each full chunk
+        private byte[] data = new byte[1 << 12];                //chunk being written
+        private int length;                                     //bytes of data used
+        private List<int[]> positions = new ArrayList<int[]>(); //edge slot -> position of its label, by chunk
+        private int slots;                                      //edge slots written
+        private long expectedSlots;                             //edge slots to make room for up front
+
+        Writer() {
+        }
+
+        /**
+         * start from labels to patch: their slots can be kept with keep, and new labels go after theirs
+         * @param base - labels to patch, which must be able to (base.canPatch())
+         */
+        Writer(EdgeLabels base) {
+            patching = true;
+            for (ByteBuffer b: base.positions) expectedSlots += b.capacity() >>> 2; //about as many as before
+            shared = Arrays.copyOf(base.labels, base.sealed);
+            if (base.labels.length > base.sealed) { //go on adding to the chunk earlier patches added to
+                ByteBuffer last = base.labels[base.sealed].duplicate();
+                last.clear();
+                length = last.capacity();
+                data = new byte[Math.max(1 << 12, Integer.highestOneBit(length) << 1)];
+                last.get(data, 0, length);
+            }
+        }
+
+        /**
+         * give the next edge slot the label of a slot of the labels being patched
+         * @param position - base.positionOf the slot
+         */
+        void keep(int position) {
+            addPosition(position);
+        }
+
+        /**
+         * give the next edge slots the labels of a run of slots of the labels being patched, copied in bulk
+         * @param base - labels being patched
+         * @param from - first slot of the run
+         * @param to - one past the last slot of the run
+         */
+        void keep(EdgeLabels base, int from, int to) {
+            while (from < to) {
+                if ((slots & SLOT_MASK) == 0) addPosition(base.positionOf(from++)); //starts the next chunk
+                int offset = slots & SLOT_MASK, count = Math.min(to - from, (1 << SLOT_BITS) - offset);
+                int[] last = positions.get(positions.size() - 1);
+                if (offset + count > last.length) {
+                    last = Arrays.copyOf(last, (int) Math.min(Math.max(last.length * 2L, offset + count), 1 << SLOT_BITS));
+                    positions.set(positions.size() - 1, last);
+                }
+                int copied = 0;
+                while (copied < count) { //the run may cross from one chunk of base's positions to the next
+                    int e = from + copied, n = Math.min(count - copied, (1 << SLOT_BITS) - (e & SLOT_MASK));
+                    ByteBuffer source = base.positions[e >>> SLOT_BITS].duplicate();
+                    source.position((e & SLOT_MASK) << 2);
+                    source.asIntBuffer().get(last, offset + copied, n);
+                    copied += n;
+                }
+                slots += count;
+                from += count;
+            }
+        }
+
+        /**
+         * give the next edge slot a label of its own
+         * @param movies - dense movie indices on the edge, sorted and distinct
+         * @throws IllegalStateException if the labels outgrow MAX_LABEL_BYTES
+         */
+        void add(CSRGraph.IntList movies) {
+            long room = 5L * (movies.size() + 1); //most a label can take
+            if (room > CHUNK) throw new IllegalStateException("An edge label can't take more than 1 GiB");
+            if (length + room > CHUNK) { //start a new chunk rather than split the label
+                done.add(data);
+                doneLength.add(length);
+                data = new byte[1 << 12];
+                length = 0;
+            }
+            long position = ((long) (shared.length + done.size()) << CHUNK_BITS) + length;
+            if (position >= MAX_LABEL_BYTES) {
+                throw new IllegalStateException("Edge labels need more than " + (MAX_LABEL_BYTES >>> 30) + " GiB");
+            }
+            addPosition((int) position);
+            write(movies.size());
+            int previous = 0;
+            for (int i = 0; i < movies.size(); i++) {
+                write(movies.get(i) - previous);
+                previous = movies.get(i);
+            }
+        }
+
+        /**
+         * give the next edge slot the label of an earlier slot - the other direction of the same edge - if the
+         * movies are the same, or a label of its own if not
+         * @param slot - earlier edge slot
+         * @param movies - dense movie indices on the edge, sorted and distinct
+         */
+        void share(int slot, CSRGraph.IntList movies) {
+            int position = positions.get(slot >>> SLOT_BITS)[slot & SLOT_MASK];
+            int chunk = position >>> CHUNK_BITS;
+            boolean same;
+            if (chunk < shared.length) { //a kept slot's label, in a chunk of the labels being patched
+                same = Arrays.equals(movies(shared, position & 0xffffffffL), movies.toArray());
+            }
+            else {
+                chunk -= shared.length;
+                byte[] labels = chunk < done.size() ? done.get(chunk) : data;
+                long read = varint(labels, position & (CHUNK - 1));
+                int size = (int) read, movie = 0;
+                same = size == movies.size();
+                for (int i = 0; same && i < size; i++) {
+                    read = varint(labels, (int) (read >>> 32));
+                    movie += (int) read;
+                    same = movie == movies.get(i);
+                }
+            }
+            if (same) addPosition(position);
+            else add(movies);
+        }
+
+        /**
+         * @param position - byte position of the next edge slot's label, as an unsigned int
+         * @throws IllegalStateException if there are already as many edge slots as an int can count
+         */
+        private void addPosition(int position) {
+            if (slots == Integer.MAX_VALUE) throw new IllegalStateException("Too many edge slots to label");
+            int offset = slots & SLOT_MASK;
+            if (offset == 0) {
+                positions.add(new int[(int) Math.max(1 << 12, Math.min(expectedSlots - slots, 1 << SLOT_BITS))]);
+            }
+            int[] last = positions.get(positions.size() - 1);
+            if (offset == last.length) {
+                last = Arrays.copyOf(last, Math.min(last.length * 2, 1 << SLOT_BITS));
+                positions.set(positions.size() - 1, last);
+            }
+            last[offset] = position;
+            slots++;
+        }
+
+        private static long varint(byte[] data, int position) { //as EdgeLabels.varint, over a heap chunk
+            int value = 0, shift = 0;
+            byte next;
+            do {
+                next = data[position++];
+                value |= (next & 0x7f) << shift;
+                shift += 7;
+            } while (next < 0);
+            return ((long) position << 32) | (value & 0xffffffffL);
+        }
+
+        private void write(int value) {
+            if (length + 5 > data.length) data = Arrays.copyOf(data, (int) Math.min(data.length * 2L, CHUNK));
+            while ((value & ~0x7f) != 0) {
+                data[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * @return - the labels written, copied into direct buffers
+         */
+        EdgeLabels build() {
+            ByteBuffer[] positionBuffers = allocatePositions(slots);
+            for (int i = 0; i < positionBuffers.length; i++) {
+                positionBuffers[i].asIntBuffer().put(positions.get(i), 0, positionBuffers[i].capacity() >>> 2);
+            }
+            ByteBuffer[] labelBuffers = Arrays.copyOf(shared, shared.length + done.size() + 1);
+            for (int i = 0; i <= done.size(); i++) {
+                byte[] chunk = i < done.size() ? done.get(i) : data;
+                int used = i < done.size() ? doneLength.get(i) : length;
+                labelBuffers[shared.length + i] = ByteBuffer.allocateDirect(used);
+                labelBuffers[shared.length + i].put(chunk, 0, used).clear();
+            }
+            //a patch leaves its last chunk for the next patch to add to; a full build seals everything
+            return new EdgeLabels(positionBuffers, labelBuffers, patching ? labelBuffers.length - 1 : labelBuffers.length);
+        }
+    }
+}
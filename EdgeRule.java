@@ -0,0 +1,121 @@
+import java.util.*;
+
+/**
+ * Which costar edges a constrained path query may use, and what each one costs. A movie counts only if its year is in
+ * the rule's window, an edge can be used only if its actors made at least minShared counted movies together, and a
+ * weighted rule charges WEIGHT_SCALE / (counted movies) for an edge, so a path through frequent costars costs less
+ * than a path through one-off ones. An unweighted rule charges 1 per edge, as a BFS counts.
+ *
+ * Edges are judged as a search reaches them, straight from the movies packed on each edge of the CSRGraph: no
+ * filtered copy of the graph is made. Without a year window, only the count at the head of an edge's label is read,
+ * so the rule costs little over a plain BFS.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class EdgeRule {
+    public static final long WEIGHT_SCALE = 2520;   //cost of one shared movie; divisible by 1..10, so 1/shared is exact for up to 10
+    public static final EdgeRule ANY = new EdgeRule(Integer.MIN_VALUE, Integer.MAX_VALUE, 1, false);
+
+    private int fromYear, toYear;   //years of the movies that count, inclusive
+    private int minShared;          //fewest counted movies an edge needs to be used
+    private boolean weighted;       //whether an edge costs WEIGHT_SCALE / counted movies instead of 1
+
+    private EdgeRule(int fromYear, int toYear, int minShared, boolean weighted) {
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        this.minShared = minShared;
+        this.weighted = weighted;
+    }
+
+    /**
+     * @param from - first year whose movies count
+     * @param to - last year whose movies count
+     * @return - this rule, counting only movies released from..to (movies without a year never count)
+     */
+    public EdgeRule inYears(int from, int to) {
+        return new EdgeRule(from, to, minShared, weighted);
+    }
+
+    /**
+     * @param shared - fewest counted movies an edge needs
+     * @return - this rule, using only edges with at least that many counted movies
+     */
+    public EdgeRule withMinShared(int shared) {
+        return new EdgeRule(fromYear, toYear, Math.max(1, shared), weighted);
+    }
+
+    /**
+     * @return - this rule, charging WEIGHT_SCALE / counted movies for each edge
+     */
+    public EdgeRule weighted() {
+        return new EdgeRule(fromYear, toYear, minShared, true);
+    }
+
+    /**
+     * @return - whether edges cost WEIGHT_SCALE / counted movies rather than 1 each
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    private boolean hasYears() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param g - graph searched
+     * @param e - edge slot
+     * @return - number of movies on edge e that count under this rule
+     */
+    public int shared(CSRGraph g, int e) {
+        return hasYears() ? g.labelSizeInYears(e, fromYear, toYear) : g.labelSize(e);
+    }
+
+    /**
+     * @param g - graph searched
+     * @param e - edge slot
+     * @return - cost of using edge e, or -1 if the rule doesn't allow it
+     */
+    public long cost(CSRGraph g, int e) {
+        int shared = shared(g, e);
+        if (shared < minShared) return -1;
+        return weighted ? (WEIGHT_SCALE + shared - 1) / shared : 1;
+    }
+
+    /**
+     * @param g - graph searched
+     * @param path - vertex indices of a path the rule allows
+     * @return - total cost of the path, in edges, or in shared movies' worth (1 / counted movies per edge) if weighted
+     */
+    public double cost(CSRGraph g, int[] path) {
+        long total = 0;
+        for (int i = 1; i < path.length; i++) {
+            total += cost(g, g.edgeIndex(path[i-1], path[i]));
+        }
+        return weighted ? (double) total / WEIGHT_SCALE : total;
+    }
+
+    /**
+     * @param g - graph searched
+     * @param e - edge slot
+     * @return - names of the movies on edge e that count under this rule
+     */
+    public Set<String> movies(CSRGraph g, int e) {
+        Set<String> movies = new HashSet<String>();
+        for (int m: g.labelMovies(e)) {
+            int year = g.movieYear(m);
+            if (!hasYears() || (year != 0 && year >= fromYear && year <= toYear)) movies.add(g.movieName(m));
+        }
+        return movies;
+    }
+
+    /**
+     * @return - what the rule allows, to print after a path, e.g. "using only movies from 1990 to 1999"
+     */
+    public String toString() {
+        List<String> parts = new ArrayList<String>();
+        if (hasYears()) parts.add("using only movies from " + fromYear + " to " + toYear);
+        if (minShared > 1) parts.add("with at least " + minShared + " movies shared at each step");
+        if (weighted) parts.add("weighing each step by 1 / movies shared");
+        return parts.isEmpty() ? "using any movies" : String.join(", ", parts);
+    }
+}
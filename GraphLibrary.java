@@ -1,4 +1,7 @@
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Graph Library with methods used in Kevin Bacon game
@@ -7,6 +10,17 @@ import java.util.*;
  * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
  */
 public class GraphLibrary <V,E>{
+    private static final int MS_BFS_WIDTH = 64;     //sources searched together by multiSourceBfs, one per bit of a long
+    private static final int UNION_CHUNK = 4096;    //componentRoots: vertices claimed by a worker at a time
+    public static final double DEFAULT_ALPHA = 14;  //directionOptimizingBfs: go bottom-up when frontier edges > unexplored / alpha
+    public static final double DEFAULT_BETA = 24;   //directionOptimizingBfs: go top-down when frontier vertices < vertices / beta
+    private static final Queue<PathScratch> PATH_SCRATCH = //idle shortestPath arrays, at most one per core; offer drops
+            new ArrayBlockingQueue<PathScratch>(Math.max(1, defaultThreads())); //the rest for the collector
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(Math.max(1, defaultThreads()), task -> {
+        Thread thread = new Thread(task, "graph-worker"); //shared by every parallel search, so concurrent callers
+        thread.setDaemon(true);                           //queue for the cores instead of each starting a pool
+        return thread;
+    });
 
     /**
      *
@@ -17,7 +31,13 @@ public class GraphLibrary <V,E>{
      * @return - shortest path tree from the source
      */
     public static <V,E> Graph<V,E> bfs(Graph<V,E> g, V source) {
-        Graph pathTree = new AdjacencyMapGraph<V,E>();
+        if (g instanceof CSRGraph) { //int-indexed graph: array BFS, with the result viewed as a tree
+            return asCallerType(shortestPaths((CSRGraph) g, (String) source));
+        }
+        if (g instanceof BipartiteGraph) {
+            return asCallerType(shortestPaths((BipartiteGraph) g, (String) source));
+        }
+        Graph<V,E> pathTree = new AdjacencyMapGraph<V,E>();
         if (g != null && g.numVertices() > 0) {
             pathTree.insertVertex(source);
             Set<V> visited = new HashSet<V>();
@@ -31,7 +51,7 @@ public class GraphLibrary <V,E>{
                         visited.add(v);
                         queue.add(v);
                         pathTree.insertVertex(v);
-                        pathTree.insertDirected(v, u, pathTree.getLabel(v, u)); //add edge from new vertex towards source
+                        pathTree.insertDirected(v, u, g.getLabel(v, u)); //add edge from new vertex towards source
                     }
                 }
             }
@@ -40,6 +60,247 @@ public class GraphLibrary <V,E>{
         return pathTree;
     }
 
+    /**
+     * Helper function for the generic methods that hand a graph to its int-indexed search: CSRGraph and BipartiteGraph
+     * are Graph<String, Set<String>>, so a caller that passed one has V = String and E = Set<String>, and a name,
+     * list of names or tree built from the int search is already of the caller's type
+     * @param result - value built for a CSRGraph or BipartiteGraph the caller passed
+     * @param <T> - the caller's type for it
+     * @return - result, as the caller's type
+     */
+    @SuppressWarnings("unchecked") //only ever called with V = String, E = Set<String>, as explained above
+    private static <T> T asCallerType(Object result) {
+        return (T) result;
+    }
+
+    /**
+     * Shortest path tree from the source found with direction-optimizing BFS when g is a CSRGraph, falling back to
+     * bfs otherwise. The tree is a valid shortest path tree with the same distances as bfs, though where an actor has
+     * several parents on the level above, the one chosen may differ.
+     * @param g - graph of actors
+     * @param source - source/ root node
+     * @param <V>
+     * @param <E>
+     * @return - shortest path tree from the source
+     */
+    public static <V,E> Graph<V,E> directionOptimizingBfs(Graph<V,E> g, V source) {
+        if (!(g instanceof CSRGraph)) {
+            return bfs(g, source);
+        }
+        CSRGraph csr = (CSRGraph) g;
+        int root = csr.indexOf((String) source);
+        int n = csr.numVertices();
+        int[] parent = new int[n], distance = new int[n], queue = new int[n];
+        if (root < 0) {
+            Arrays.fill(parent, -1);
+            Arrays.fill(distance, -1);
+            return asCallerType(new ShortestPathResult(csr, -1, parent, distance, queue, 0));
+        }
+        int reached = directionOptimizingBfs(csr, root, parent, distance, queue, DEFAULT_ALPHA, DEFAULT_BETA);
+        return asCallerType(new ShortestPathResult(csr, root, parent, distance, queue, reached));
+    }
+
+    /**
+     * BFS over a CSRGraph keeping the result as parent and distance arrays
+     * @param g - graph of actors
+     * @param source - name of the root actor
+     * @return - shortest paths from source; empty (no vertices) if source is not in the graph
+     */
+    public static ShortestPathResult shortestPaths(CSRGraph g, String source) {
+        long start = Metrics.start();
+        int root = g.indexOf(source);
+        int n = g.numVertices();
+        int[] parent = new int[n], distance = new int[n], queue = new int[n];
+        if (root < 0) {
+            Arrays.fill(parent, -1);
+            Arrays.fill(distance, -1);
+            return new ShortestPathResult(g, -1, parent, distance, queue, 0);
+        }
+        int reached = bfs(g, root, parent, distance, queue);
+        ShortestPathResult tree = new ShortestPathResult(g, root, parent, distance, queue, reached);
+        if (Metrics.ENABLED) Metrics.recordSearch(g, tree, start);
+        return tree;
+    }
+
+    /**
+     * BFS over a BipartiteGraph keeping the result as parent and distance arrays
+     * @param g - graph of actors
+     * @param source - name of the root actor
+     * @return - shortest paths from source; empty (no vertices) if source is not in the graph
+     */
+    public static ShortestPathResult shortestPaths(BipartiteGraph g, String source) {
+        int root = g.indexOf(source);
+        int n = g.numVertices();
+        int[] parent = new int[n], distance = new int[n], queue = new int[n];
+        if (root < 0) {
+            Arrays.fill(parent, -1);
+            Arrays.fill(distance, -1);
+            return new ShortestPathResult(g, -1, parent, distance, queue, 0);
+        }
+        int reached = bfs(g, root, parent, distance, queue);
+        return new ShortestPathResult(g, root, parent, distance, queue, reached);
+    }
+
+    /**
+     * Breadth-first search over a BipartiteGraph. Every movie's cast is scanned at most once - the first time one of
+     * its actors is dequeued, every unvisited castmate is one step further out - so a search costs O(credits) instead
+     * of O(costar edges).
+     * @param g - graph to search
+     * @param source - vertex index of the root
+     * @param parent - filled with each vertex's parent in the shortest path tree (-1 for the root and unreached vertices)
+     * @param distance - filled with each vertex's distance from the root (-1 for unreached vertices)
+     * @param queue - scratch queue; on return its first (return value) entries are the reached vertices in BFS order
+     * @return - number of vertices reached, including the root
+     */
+    public static int bfs(BipartiteGraph g, int source, int[] parent, int[] distance, int[] queue) {
+        Arrays.fill(parent, 0, g.numVertices(), -1);
+        Arrays.fill(distance, 0, g.numVertices(), -1);
+        long[] movieSeen = new long[(g.numMovies() + 63) >>> 6];
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int i = g.movieStart(u); i < g.movieEnd(u); i++) {
+                int m = g.movieAt(i);
+                if ((movieSeen[m >>> 6] & (1L << m)) != 0) continue;
+                movieSeen[m >>> 6] |= 1L << m;
+                for (int j = g.castStart(m); j < g.castEnd(m); j++) {
+                    int v = g.castMember(j);
+                    if (distance[v] < 0) {
+                        distance[v] = distance[u] + 1;
+                        parent[v] = u;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Breadth-first search over a CSRGraph using only the caller's int arrays, so nothing is allocated per visit
+     * @param g - graph to search
+     * @param source - vertex index of the root
+     * @param parent - filled with each vertex's parent in the shortest path tree (-1 for the root and unreached vertices)
+     * @param distance - filled with each vertex's distance from the root (-1 for unreached vertices)
+     * @param queue - scratch queue; on return its first (return value) entries are the reached vertices in BFS order
+     * @return - number of vertices reached, including the root
+     */
+    public static int bfs(CSRGraph g, int source, int[] parent, int[] distance, int[] queue) {
+        Arrays.fill(parent, 0, g.numVertices(), -1);
+        Arrays.fill(distance, 0, g.numVertices(), -1);
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                int v = g.target(e);
+                if (distance[v] < 0) {
+                    distance[v] = distance[u] + 1;
+                    parent[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Direction-optimizing (Beamer-style) BFS over a CSRGraph. Small frontiers are expanded top-down, pushing each
+     * frontier vertex's edges outward. Once the frontier's edges outnumber the edges left to explore divided by alpha,
+     * levels are built bottom-up instead: every unvisited vertex scans its own neighbors and stops at the first one
+     * in the frontier, which on a small-world graph skips most edge checks. It returns to top-down once the frontier
+     * falls below numVertices / beta vertices. Visited and frontier sets are dense bitmaps. Bottom-up steps rely on
+     * the graph being undirected, which an actor graph always is.
+     * @param g - graph to search
+     * @param source - vertex index of the root
+     * @param parent - filled with each vertex's parent in the shortest path tree (-1 for the root and unreached vertices)
+     * @param distance - filled with each vertex's distance from the root (-1 for unreached vertices)
+     * @param queue - scratch queue; on return its first (return value) entries are the reached vertices, level by level
+     * @param alpha - switch to bottom-up when frontier edges > unexplored edges / alpha (larger switches sooner)
+     * @param beta - switch back to top-down when frontier vertices < numVertices / beta (larger switches later)
+     * @return - number of vertices reached, including the root
+     */
+    public static int directionOptimizingBfs(CSRGraph g, int source, int[] parent, int[] distance, int[] queue,
+                                             double alpha, double beta) {
+        int n = g.numVertices();
+        Arrays.fill(parent, 0, n, -1);
+        Arrays.fill(distance, 0, n, -1);
+        long[] visited = new long[(n + 63) >>> 6];
+        long[] frontier = new long[(n + 63) >>> 6];
+
+        int tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        visited[source >>> 6] |= 1L << source;
+        long frontierEdges = g.degree(source);
+        long unexploredEdges = g.numEdges() - frontierEdges;
+        boolean bottomUp = false;
+
+        int levelStart = 0, levelEnd = tail;
+        for (int level = 1; levelStart < levelEnd; level++) {
+            int frontierSize = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unexploredEdges / alpha) {
+                bottomUp = true;
+            }
+            else if (bottomUp && frontierSize < n / beta) {
+                bottomUp = false;
+            }
+
+            long nextFrontierEdges = 0;
+            if (!bottomUp) {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    int u = queue[i];
+                    for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                        int v = g.target(e);
+                        if ((visited[v >>> 6] & (1L << v)) == 0) {
+                            visited[v >>> 6] |= 1L << v;
+                            distance[v] = level;
+                            parent[v] = u;
+                            queue[tail++] = v;
+                            nextFrontierEdges += g.degree(v);
+                        }
+                    }
+                }
+            }
+            else {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    frontier[queue[i] >>> 6] |= 1L << queue[i];
+                }
+                for (int w = 0; w < visited.length; w++) {
+                    long unvisited = ~visited[w];
+                    while (unvisited != 0) {
+                        int v = (w << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (v >= n) break;
+                        for (int e = g.edgeStart(v); e < g.edgeEnd(v); e++) {
+                            int u = g.target(e);
+                            if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                                visited[w] |= 1L << v;
+                                distance[v] = level;
+                                parent[v] = u;
+                                queue[tail++] = v;
+                                nextFrontierEdges += g.degree(v);
+                                break;
+                            }
+                        }
+                    }
+                }
+                for (int i = levelStart; i < levelEnd; i++) {
+                    frontier[queue[i] >>> 6] = 0;
+                }
+            }
+
+            unexploredEdges -= nextFrontierEdges;
+            frontierEdges = nextFrontierEdges;
+            levelStart = levelEnd;
+            levelEnd = tail;
+        }
+        return tail;
+    }
+
     /**
      * Create a list keeping track of the path from the root of the tree to a specified vertex
      * @param tree - shortestPathTree
@@ -49,6 +310,9 @@ public class GraphLibrary <V,E>{
      * @return - List with objects of type V containing the path from the root to vertex v
      */
     public static <V,E> List<V> getPath(Graph<V,E> tree, V v){
+        if (tree instanceof ShortestPathResult) {
+            return asCallerType(((ShortestPathResult) tree).pathTo((String) v));
+        }
         if (tree.numVertices() == 0 || !tree.hasVertex(v)) {
             return new ArrayList<V>();
         }
@@ -58,11 +322,371 @@ public class GraphLibrary <V,E>{
         path.add(current); //add source
         while(tree.outDegree(current) != 0) {
             current = tree.outNeighbors(current).iterator().next();
-            path.add(0, current);
+            path.add(current);
         }
+        Collections.reverse(path); //built from v back to the root, so flip it to run root -> v
         return path;
     }
 
+    /**
+     * Shortest path between two actors found with bidirectional BFS: searches grow from both ends, each step
+     * expanding a whole level of whichever frontier is smaller, until they meet. On a small-world graph this touches
+     * a tiny fraction of the vertices a full BFS from from would.
+     * @param g - graph of actors
+     * @param from - vertex at the start of the path (e.g. the center of the universe)
+     * @param to - vertex at the end of the path
+     * @param <V>
+     * @param <E>
+     * @return - List with the path from from to to, in the same order getPath returns, or an empty list if there is
+     * no path
+     */
+    public static <V,E> List<V> shortestPath(Graph<V,E> g, V from, V to) {
+        if (g instanceof CSRGraph) {
+            CSRGraph csr = (CSRGraph) g;
+            int s = csr.indexOf((String) from), t = csr.indexOf((String) to);
+            List<String> path = new ArrayList<String>();
+            if (s >= 0 && t >= 0) {
+                for (int v: shortestPath(csr, s, t)) {
+                    path.add(csr.nameOf(v));
+                }
+            }
+            return asCallerType(path);
+        }
+
+        List<V> path = new ArrayList<V>();
+        if (g == null || !g.hasVertex(from) || !g.hasVertex(to)) return path;
+        Map<V, V> parentFrom = new HashMap<V, V>(), parentTo = new HashMap<V, V>();
+        Map<V, Integer> distFrom = new HashMap<V, Integer>(), distTo = new HashMap<V, Integer>(); //also visited sets
+        parentFrom.put(from, from);
+        distFrom.put(from, 0);
+        parentTo.put(to, to);
+        distTo.put(to, 0);
+        List<V> frontierFrom = new ArrayList<V>(), frontierTo = new ArrayList<V>();
+        frontierFrom.add(from);
+        frontierTo.add(to);
+        V meetFrom = from.equals(to) ? from : null, meetTo = meetFrom; //edge meetFrom - meetTo joins the two searches
+        while (meetFrom == null && !frontierFrom.isEmpty() && !frontierTo.isEmpty()) {
+            boolean forward = frontierFrom.size() <= frontierTo.size();
+            Map<V, V> parent = forward ? parentFrom : parentTo;
+            Map<V, Integer> dist = forward ? distFrom : distTo, otherDist = forward ? distTo : distFrom;
+            List<V> next = new ArrayList<V>();
+            int best = Integer.MAX_VALUE;
+            for (V u: forward ? frontierFrom : frontierTo) {
+                for (V v: g.outNeighbors(u)) {
+                    if (otherDist.containsKey(v) && dist.get(u) + 1 + otherDist.get(v) < best) { //the searches meet; keep the shortest on this level
+                        best = dist.get(u) + 1 + otherDist.get(v);
+                        meetFrom = forward ? u : v;
+                        meetTo = forward ? v : u;
+                    }
+                    if (!dist.containsKey(v)) {
+                        dist.put(v, dist.get(u) + 1);
+                        parent.put(v, u);
+                        next.add(v);
+                    }
+                }
+            }
+            if (forward) frontierFrom = next;
+            else frontierTo = next;
+        }
+        if (meetFrom == null) return path;
+        for (V v = meetFrom; ; v = parentFrom.get(v)) {
+            path.add(v);
+            if (v.equals(from)) break;
+        }
+        Collections.reverse(path);
+        if (!meetTo.equals(meetFrom)) {
+            for (V v = meetTo; ; v = parentTo.get(v)) {
+                path.add(v);
+                if (v.equals(to)) break;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Bring a shortest path tree up to date with a graph that has only gained actors and edges since the tree was
+     * searched, without searching from scratch. New edges can only shorten distances, so each new cast is attached to
+     * the tree one level below its closest member, and a BFS from the members that got closer relaxes only the
+     * actors whose distance drops; everything else keeps its distance and parent.
+     * @param tree - shortest path tree over an earlier version of g
+     * @param g - the tree's graph plus any number of new actors (at the end) and new edges
+     * @param casts - vertex indices of the actors in each cast whose edges are new
+     * @return - shortest path tree over g from the same source, or null if the tree has no source in the graph
+     */
+    public static ShortestPathResult repairShortestPaths(ShortestPathResult tree, CSRGraph g, List<int[]> casts) {
+        if (tree.getSource() == null) return null;
+        long start = Metrics.start();
+        int n = g.numVertices(), old = tree.getGraph().numVertices();
+        int[] parent = new int[n], distance = new int[n], queue = new int[n];
+        for (int v = 0; v < n; v++) {
+            parent[v] = v < old ? tree.parentOf(v) : -1;
+            distance[v] = v < old ? tree.distanceTo(v) : -1;
+        }
+        int tail = 0;
+        for (int[] cast: casts) {
+            int closest = -1;
+            for (int v: cast) {
+                if (distance[v] >= 0 && (closest < 0 || distance[v] < distance[closest])) closest = v;
+            }
+            if (closest < 0) continue; //none of the cast is reachable, so neither are its new edges
+            for (int v: cast) {
+                if (distance[v] < 0 || distance[v] > distance[closest] + 1) {
+                    distance[v] = distance[closest] + 1;
+                    parent[v] = closest;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) { //a vertex can only be queued again at a smaller distance
+            int u = queue[head];
+            for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                int v = g.target(e);
+                if (distance[v] < 0 || distance[v] > distance[u] + 1) {
+                    distance[v] = distance[u] + 1;
+                    parent[v] = u;
+                    if (tail == queue.length) queue = Arrays.copyOf(queue, queue.length * 2);
+                    queue[tail++] = v;
+                }
+            }
+        }
+
+        int levels = 0; //counting sort the reached vertices by distance, which is the order a BFS visits them in
+        for (int v = 0; v < n; v++) {
+            levels = Math.max(levels, distance[v] + 1);
+        }
+        int[] levelStart = new int[levels+1];
+        for (int v = 0; v < n; v++) {
+            if (distance[v] >= 0) levelStart[distance[v]+1]++;
+        }
+        for (int d = 0; d < levels; d++) {
+            levelStart[d+1] += levelStart[d];
+        }
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) {
+            if (distance[v] >= 0) order[levelStart[distance[v]]++] = v;
+        }
+        if (Metrics.ENABLED) Metrics.time("bfs.repair", start);
+        return new ShortestPathResult(g, g.indexOf(tree.getSource()), parent, distance, order, levels == 0 ? 0 : levelStart[levels-1]);
+    }
+
+    /**
+     * Bidirectional BFS over a CSRGraph. The per-vertex parent and distance arrays are borrowed from a shared pool and
+     * only the entries a query touched are reset before they are returned, so a query costs time proportional to the
+     * part of the graph it explores, not to the size of the graph. The pool keeps at most defaultThreads() idle sets of
+     * arrays; a burst of more queries than that at once allocates extra sets, which the collector takes back.
+     * @param g - graph to search
+     * @param s - vertex index at the start of the path
+     * @param t - vertex index at the end of the path
+     * @return - vertex indices of a shortest path from s to t, or an empty array if there is no path
+     */
+    public static int[] shortestPath(CSRGraph g, int s, int t) {
+        return shortestPath(g, s, t, null);
+    }
+
+    /**
+     * Helper function for shortestPath and constrainedPath: bidirectional BFS over the edges a rule allows. An edge's
+     * movies are only read when the edge would reach a new vertex or meet the other search, and both searches can
+     * use the same rule because the graph is undirected.
+     * @param rule - which edges may be used, or null for every edge
+     */
+    private static int[] shortestPath(CSRGraph g, int s, int t, EdgeRule rule) {
+        long start = Metrics.start();
+        PathScratch polled = PATH_SCRATCH.poll();
+        PathScratch scratch = polled != null ? polled : new PathScratch();
+        scratch.ensureCapacity(g.numVertices());
+        int[] parentF = scratch.parentFrom, parentB = scratch.parentTo, distF = scratch.distFrom, distB = scratch.distTo;
+        int[] queueF = scratch.queueFrom, queueB = scratch.queueTo;
+
+        int headF = 0, tailF = 0, headB = 0, tailB = 0;
+        parentF[s] = s;
+        distF[s] = 0;
+        queueF[tailF++] = s;
+        parentB[t] = t;
+        distB[t] = 0;
+        queueB[tailB++] = t;
+        int meetF = s == t ? s : -1, meetB = meetF, best = s == t ? 0 : Integer.MAX_VALUE;
+
+        try {
+            while (meetF < 0 && headF < tailF && headB < tailB) {
+                boolean forward = tailF - headF <= tailB - headB;
+                int[] parent = forward ? parentF : parentB, dist = forward ? distF : distB;
+                int[] otherDist = forward ? distB : distF, queue = forward ? queueF : queueB;
+                int head = forward ? headF : headB, tail = forward ? tailF : tailB;
+                int levelEnd = tail;
+                int candidateU = -1, candidateV = -1;
+                for (; head < levelEnd; head++) {
+                    int u = queue[head];
+                    for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                        int v = g.target(e);
+                        if (rule != null && (dist[v] >= 0 && (otherDist[v] < 0 || dist[u] + 1 + otherDist[v] >= best)
+                                || rule.cost(g, e) < 0)) {
+                            continue; //nothing to learn from this edge, or the rule doesn't allow it
+                        }
+                        if (otherDist[v] >= 0 && dist[u] + 1 + otherDist[v] < best) { //keep the shortest meeting on this level
+                            best = dist[u] + 1 + otherDist[v];
+                            candidateU = u;
+                            candidateV = v;
+                        }
+                        if (dist[v] < 0) {
+                            dist[v] = dist[u] + 1;
+                            parent[v] = u;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+                if (forward) { headF = head; tailF = tail; }
+                else { headB = head; tailB = tail; }
+                if (candidateU >= 0) {
+                    meetF = forward ? candidateU : candidateV;
+                    meetB = forward ? candidateV : candidateU;
+                }
+            }
+            if (meetF < 0) return new int[0];
+
+            int[] path = new int[best+1];
+            int i = distF[meetF];
+            for (int v = meetF; i >= 0; v = parentF[v]) {
+                path[i--] = v;
+            }
+            i = distF[meetF] + 1;
+            for (int v = meetB; meetB != meetF && i < path.length; v = parentB[v]) {
+                path[i++] = v;
+            }
+            return path;
+        }
+        finally { //every vertex either search touched is in its queue, so that's all there is to reset
+            for (int i = 0; i < tailF; i++) {
+                parentF[queueF[i]] = -1;
+                distF[queueF[i]] = -1;
+            }
+            for (int i = 0; i < tailB; i++) {
+                parentB[queueB[i]] = -1;
+                distB[queueB[i]] = -1;
+            }
+            PATH_SCRATCH.offer(scratch);
+            if (Metrics.ENABLED) {
+                Metrics.time("bfs.bidirectional", start);
+                Metrics.count("bfs.bidirectional.vertices", tailF + tailB);
+            }
+        }
+    }
+
+    /**
+     * BFS over a CSRGraph using only the edges a rule allows, keeping the result as parent and distance arrays
+     * @param g - graph of actors
+     * @param source - name of the root actor
+     * @param rule - which edges may be used; its weights are ignored, every step counts 1
+     * @return - shortest paths from source over the allowed edges; empty (no vertices) if source is not in the graph
+     */
+    public static ShortestPathResult shortestPaths(CSRGraph g, String source, EdgeRule rule) {
+        long start = Metrics.start();
+        int root = g.indexOf(source);
+        int n = g.numVertices();
+        int[] parent = new int[n], distance = new int[n], queue = new int[n];
+        Arrays.fill(parent, -1);
+        Arrays.fill(distance, -1);
+        if (root < 0) return new ShortestPathResult(g, -1, parent, distance, queue, 0);
+        int reached = bfs(g, root, parent, distance, queue, rule);
+        ShortestPathResult tree = new ShortestPathResult(g, root, parent, distance, queue, reached);
+        if (Metrics.ENABLED) Metrics.time("bfs.constrained", start);
+        return tree;
+    }
+
+    /**
+     * Helper function for shortestPaths: BFS over the edges a rule allows. An edge's movies are only read
+     * once its far end is known to be unvisited, so the rule is checked about once per vertex reached.
+     * @param g - graph to search
+     * @param source - vertex index of the root
+     * @param parent - all -1 on entry; filled with each reached vertex's parent
+     * @param distance - all -1 on entry; filled with each reached vertex's distance from the root
+     * @param queue - scratch queue; on return its first (return value) entries are the reached vertices in BFS order
+     * @param rule - which edges may be used
+     * @return - number of vertices reached, including the root
+     */
+    private static int bfs(CSRGraph g, int source, int[] parent, int[] distance, int[] queue, EdgeRule rule) {
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                int v = g.target(e);
+                if (distance[v] < 0 && rule.cost(g, e) >= 0) {
+                    distance[v] = distance[u] + 1;
+                    parent[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Path between two actors over the edges a rule allows: the fewest steps for an unweighted rule, by the same
+     * bidirectional BFS as shortestPath, or the lowest total cost for a weighted one, by Dijkstra's algorithm over a
+     * RadixHeap. Both borrow their arrays from the same pool and read the movies packed on each edge as they go, so no
+     * filtered copy of the graph is made.
+     * @param g - graph to search
+     * @param s - vertex index at the start of the path
+     * @param t - vertex index at the end of the path
+     * @param rule - which edges may be used and what they cost
+     * @return - vertex indices of a best path from s to t, or an empty array if the rule allows no path
+     */
+    public static int[] constrainedPath(CSRGraph g, int s, int t, EdgeRule rule) {
+        if (!rule.isWeighted()) return shortestPath(g, s, t, rule);
+        long start = Metrics.start();
+        PathScratch polled = PATH_SCRATCH.poll();
+        PathScratch scratch = polled != null ? polled : new PathScratch();
+        scratch.ensureCapacity(g.numVertices());
+        int[] parent = scratch.parentFrom, distance = scratch.distFrom, queue = scratch.queueFrom;
+        long[] cost = scratch.costFrom;
+        int touched = 0; //queue[0..touched-1] are the vertices whose entries need resetting
+        try {
+            RadixHeap heap = new RadixHeap();
+            cost[s] = 0;
+            queue[touched++] = s;
+            heap.push(s, 0);
+            while (!heap.isEmpty()) {
+                int u = heap.pop();
+                if (distance[u] >= 0) continue; //an entry left behind when a cheaper path was found
+                distance[u] = 0; //settled: no cheaper path to u is left to find
+                if (u == t) break;
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.target(e);
+                    if (distance[v] >= 0) continue;
+                    long w = rule.cost(g, e);
+                    if (w < 0 || (cost[v] >= 0 && cost[v] <= cost[u] + w)) continue;
+                    if (cost[v] < 0) queue[touched++] = v;
+                    cost[v] = cost[u] + w;
+                    parent[v] = u;
+                    heap.push(v, cost[v]);
+                }
+            }
+            if (distance[t] < 0) return new int[0];
+            int length = 0;
+            for (int v = t; v != s; v = parent[v]) {
+                length++;
+            }
+            int[] path = new int[length+1];
+            for (int v = t, i = length; i >= 0; v = parent[v], i--) {
+                path[i] = v;
+            }
+            return path;
+        }
+        finally {
+            for (int i = 0; i < touched; i++) {
+                parent[queue[i]] = -1;
+                distance[queue[i]] = -1;
+                cost[queue[i]] = -1;
+            }
+            PATH_SCRATCH.offer(scratch);
+            if (Metrics.ENABLED) {
+                Metrics.time("path.weighted", start);
+                Metrics.count("path.weighted.vertices", touched);
+            }
+        }
+    }
+
     /**
      * Given a graph and a subgraph (here shortest path tree), determine which vertices are in the graph but not
      * the subgraph (here, not reached by BFS).
@@ -73,7 +697,14 @@ public class GraphLibrary <V,E>{
      * @return - Set containing vertices found in graph but not in subgraph
      */
     public static <V, E> Set<V> missingVertices(Graph<V,E> graph, Graph<V,E> subgraph) {
-        Set missing = new HashSet<V>();
+        Set<V> missing = new HashSet<V>();
+        if (subgraph instanceof ShortestPathResult && ((ShortestPathResult) subgraph).getGraph() == graph) {
+            ShortestPathResult tree = (ShortestPathResult) subgraph; //unreachable actors are already bucketed
+            for (int i = tree.reachedCount(); i < tree.reachedCount() + tree.unreachableCount(); i++) {
+                missing.add(asCallerType(tree.getGraph().nameOf(tree.vertexAt(i))));
+            }
+            return missing;
+        }
         for (V v: graph.vertices()) {
             if (!subgraph.hasVertex(v)) {
                 missing.add(v);
@@ -91,8 +722,11 @@ public class GraphLibrary <V,E>{
      * @return - double representing average distance-from-root
      */
     public static <V, E> double averageSeparation(Graph<V,E> tree, V root) {
-        if (tree != null & tree.numVertices()>0) {
-            double totalDistance = calcTotalSeparation(tree, root, 0);
+        if (tree != null && tree.numVertices()>0) {
+            if (tree instanceof ShortestPathResult) { //total distance was already summed by the BFS
+                return ((ShortestPathResult) tree).averageSeparation();
+            }
+            double totalDistance = calcTotalSeparation(tree, root);
             return totalDistance / (tree.numVertices()-1);
         }
         else {
@@ -102,18 +736,29 @@ public class GraphLibrary <V,E>{
     }
 
     /**
-     * Helper function using recursion for averageSeparation
+     * Helper function for averageSeparation, walking the tree level by level from the root so that deep trees can't
+     * overflow the stack
      * @param tree - shortestPathTree
-     * @param vertex - the vertex being examined
-     * @param distanceFromRoot - current distance from the room
+     * @param root - root node of shortestPathTree
      * @param <V>
      * @param <E>
      * @return - the total degrees of separation from the root
      */
-    private static <V,E> double calcTotalSeparation (Graph<V,E> tree, V vertex, double distanceFromRoot) {
-        double distance = distanceFromRoot;
-        for (V neighbor: tree.inNeighbors(vertex)) {
-            distance += calcTotalSeparation(tree, neighbor, distanceFromRoot+1);
+    private static <V,E> double calcTotalSeparation (Graph<V,E> tree, V root) {
+        double distance = 0;
+        int distanceFromRoot = 0;
+        List<V> level = new ArrayList<V>();
+        level.add(root);
+        while (!level.isEmpty()) {
+            distance += (double) distanceFromRoot * level.size();
+            List<V> nextLevel = new ArrayList<V>();
+            for (V vertex: level) {
+                for (V child: tree.inNeighbors(vertex)) {
+                    nextLevel.add(child);
+                }
+            }
+            level = nextLevel;
+            distanceFromRoot++;
         }
         return distance;
     }
@@ -126,7 +771,28 @@ public class GraphLibrary <V,E>{
      * @return - HashMap of vertex -> its average separation
      */
     public static <V, E> Map<V, Double> avSepMap(Graph<V,E> universe) {
+        return avSepMap(universe, defaultThreads());
+    }
+
+    /**
+     * Create a map mapping vertex -> its average separation, spreading the BFS runs over a pool of worker threads
+     * when the universe is a CSRGraph
+     * @param universe - the big graph
+     * @param threads - number of worker threads to use
+     * @param <V>
+     * @param <E>
+     * @return - HashMap of vertex -> its average separation
+     */
+    public static <V, E> Map<V, Double> avSepMap(Graph<V,E> universe, int threads) {
         HashMap<V, Double> sepMap = new HashMap<>();
+        if (universe instanceof CSRGraph) {
+            CSRGraph csr = (CSRGraph) universe;
+            double[] separations = averageSeparations(csr, threads);
+            for (int v = 0; v < separations.length; v++) {
+                sepMap.put(asCallerType(csr.nameOf(v)), separations[v]);
+            }
+            return sepMap;
+        }
         for (V vertex: universe.vertices()) {
             double avSep = averageSeparation(bfs(universe, vertex), vertex);
             sepMap.put(vertex, avSep);
@@ -134,4 +800,393 @@ public class GraphLibrary <V,E>{
         return sepMap;
     }
 
+    /**
+     * Average separation of every vertex of a CSRGraph, computed with bit-parallel multi-source BFS on a pool of
+     * worker threads
+     * @param g - the big graph
+     * @param threads - number of worker threads to use
+     * @return - array of vertex index -> its average separation (NaN for a vertex with no neighbors, as in
+     * averageSeparation)
+     */
+    public static double[] averageSeparations(CSRGraph g, int threads) {
+        int[] sources = new int[g.numVertices()];
+        for (int v = 0; v < sources.length; v++) {
+            sources[v] = v;
+        }
+        return averageSeparations(g, sources, threads);
+    }
+
+    /**
+     * Average separation of each of a batch of centers. Sources are claimed by the workers 64 at a time and each
+     * group of 64 is searched together by multiSourceBfs, so one sweep over the adjacency advances all of them. Each
+     * worker owns its own bitset arrays, so workers never share mutable state except the batch counter and each
+     * writes only its own sources' results.
+     * @param g - the big graph
+     * @param sources - vertex indices of the centers
+     * @param threads - number of worker threads to use
+     * @return - array where entry i is the average separation of sources[i], identical to running bfs and
+     * averageSeparation from that source
+     */
+    public static double[] averageSeparations(CSRGraph g, int[] sources, int threads) {
+        long began = Metrics.start();
+        int n = g.numVertices();
+        double[] separations = new double[sources.length];
+        AtomicInteger nextBatch = new AtomicInteger();
+        Runnable worker = () -> {
+            long[] seen = new long[n], visit = new long[n], visitNext = new long[n];
+            long[] totals = new long[MS_BFS_WIDTH];
+            int[] reached = new int[MS_BFS_WIDTH];
+            int start;
+            while ((start = nextBatch.getAndAdd(MS_BFS_WIDTH)) < sources.length) {
+                int count = Math.min(MS_BFS_WIDTH, sources.length - start);
+                multiSourceBfs(g, sources, start, count, seen, visit, visitNext, totals, reached);
+                for (int b = 0; b < count; b++) {
+                    separations[start + b] = (double) totals[b] / (reached[b]-1);
+                }
+            }
+        };
+        runWorkers(worker, Math.max(1, Math.min(threads, (sources.length + MS_BFS_WIDTH - 1) / MS_BFS_WIDTH)));
+        if (Metrics.ENABLED) {
+            Metrics.time("bfs.multiSource", began);
+            Metrics.count("bfs.multiSource.sources", sources.length);
+        }
+        return separations;
+    }
+
+    /**
+     * The k centers with the smallest average separation among a set of sources, with a BFS from each source that
+     * stops as soon as it can no longer enter the top k. After each level the source's total distance so far plus
+     * every unreached actor of its component counted at the next distance is a lower bound on its final total, so once
+     * that bound can't beat the k-th best average found so far (shared by the workers through a TopK) the rest of the
+     * search is skipped. Sources are searched in order of decreasing degree, since well connected actors tend to be
+     * good centers and set a tight threshold early.
+     * @param g - the big graph
+     * @param components - component labels of g, giving the number of actors each source can reach
+     * @param sources - vertex indices of the candidate centers
+     * @param k - number of centers wanted
+     * @param threads - number of worker threads to use
+     * @return - the k best centers with their average separations, identical to those of averageSeparations
+     */
+    public static TopK closestCenters(CSRGraph g, ComponentIndex components, int[] sources, int k, int threads) {
+        long began = Metrics.start();
+        int n = g.numVertices();
+        TopK top = new TopK(Math.min(k, sources.length), true);
+        long[] byDegree = new long[sources.length]; //degree in the high half, so sorting orders the sources by degree
+        for (int i = 0; i < sources.length; i++) {
+            byDegree[i] = (long) g.degree(sources[i]) << 32 | sources[i];
+        }
+        Arrays.sort(byDegree);
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int[] distance = new int[n], queue = new int[n];
+            Arrays.fill(distance, -1);
+            int i;
+            while ((i = next.getAndIncrement()) < byDegree.length) {
+                int s = (int) byDegree[byDegree.length-1-i];
+                int componentSize = components.componentSize(components.componentOf(s));
+                distance[s] = 0;
+                queue[0] = s;
+                int head = 0, tail = 1, levelEnd = 1;
+                long total = 0;
+                boolean pruned = false;
+                while (head < tail) {
+                    int u = queue[head++];
+                    for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                        int v = g.target(e);
+                        if (distance[v] < 0) {
+                            distance[v] = distance[u] + 1;
+                            total += distance[v];
+                            queue[tail++] = v;
+                        }
+                    }
+                    if (head == levelEnd && head < tail) { //a level is done and the next one is fully discovered
+                        levelEnd = tail;
+                        long bound = total + (long) (componentSize - tail) * (distance[queue[tail-1]] + 1);
+                        if ((double) bound / (componentSize-1) >= top.threshold()) {
+                            pruned = true;
+                            break;
+                        }
+                    }
+                }
+                if (!pruned) top.offer(s, (double) total / (tail-1));
+                if (Metrics.ENABLED && pruned) Metrics.count("centers.closest.pruned", 1);
+                for (int j = 0; j < tail; j++) { //only reset what this search touched
+                    distance[queue[j]] = -1;
+                }
+            }
+        };
+        runWorkers(worker, Math.max(1, Math.min(threads, sources.length)));
+        if (Metrics.ENABLED) Metrics.time("centers.closest", began);
+        return top;
+    }
+
+    /**
+     * Sum every vertex's distances from a run of pivots, searching the pivots 64 at a time with multiSourceBfs on a
+     * pool of worker threads. Each worker accumulates into its own arrays, added into the caller's when it finishes.
+     * @param g - the big graph
+     * @param pivots - vertex indices of the pivots
+     * @param from - position in pivots of the first pivot to search
+     * @param count - number of pivots to search
+     * @param vertexTotals - each vertex's distances from the pivots that reach it are added to its entry
+     * @param vertexSquares - the squares of those distances are added to each vertex's entry
+     * @param threads - number of worker threads to use
+     * @return - the largest distance from any of the pivots to a vertex it reaches
+     */
+    public static int pivotDistances(CSRGraph g, int[] pivots, int from, int count, long[] vertexTotals,
+                                     long[] vertexSquares, int threads) {
+        int n = g.numVertices();
+        AtomicInteger nextBatch = new AtomicInteger(from);
+        AtomicInteger eccentricity = new AtomicInteger();
+        Runnable worker = () -> {
+            long[] seen = new long[n], visit = new long[n], visitNext = new long[n];
+            long[] totals = new long[MS_BFS_WIDTH], workerTotals = new long[n], workerSquares = new long[n];
+            int[] reached = new int[MS_BFS_WIDTH];
+            int start;
+            while ((start = nextBatch.getAndAdd(MS_BFS_WIDTH)) < from + count) {
+                int batch = Math.min(MS_BFS_WIDTH, from + count - start);
+                int levels = multiSourceBfs(g, pivots, start, batch, seen, visit, visitNext, totals, reached,
+                        workerTotals, workerSquares);
+                eccentricity.accumulateAndGet(levels, Math::max);
+            }
+            synchronized (vertexTotals) {
+                for (int v = 0; v < n; v++) {
+                    vertexTotals[v] += workerTotals[v];
+                    vertexSquares[v] += workerSquares[v];
+                }
+            }
+        };
+        runWorkers(worker, Math.max(1, Math.min(threads, (count + MS_BFS_WIDTH - 1) / MS_BFS_WIDTH)));
+        return eccentricity.get();
+    }
+
+    /**
+     * Bit-parallel multi-source BFS: up to 64 searches run at once, with bit b of a vertex's words standing for the
+     * search from sources[from+b]. seen holds the searches that have reached each vertex, visit the searches whose
+     * frontier contains it, and visitNext the searches that reach it on the level being built, so each level is a
+     * single pass over the adjacency of the vertices in any frontier.
+     * @param g - graph to search
+     * @param sources - vertex indices of the sources
+     * @param from - position in sources of the first source of this batch
+     * @param count - number of sources in this batch, at most 64
+     * @param seen - scratch bitsets, one word per vertex
+     * @param visit - scratch bitsets, one word per vertex
+     * @param visitNext - scratch bitsets, one word per vertex
+     * @param totals - filled with the total distance from each source to every vertex it reaches
+     * @param reached - filled with the number of vertices each source reaches, including itself
+     */
+    public static void multiSourceBfs(CSRGraph g, int[] sources, int from, int count, long[] seen, long[] visit,
+                                      long[] visitNext, long[] totals, int[] reached) {
+        multiSourceBfs(g, sources, from, count, seen, visit, visitNext, totals, reached, null, null);
+    }
+
+    /**
+     * Bit-parallel multi-source BFS that also credits each vertex with its distances from the sources of the batch,
+     * so a batch of pivots gives every vertex a sample of its own distances as well as the pivots' totals
+     * @param g - graph to search
+     * @param sources - vertex indices of the sources
+     * @param from - position in sources of the first source of this batch
+     * @param count - number of sources in this batch, at most 64
+     * @param seen - scratch bitsets, one word per vertex
+     * @param visit - scratch bitsets, one word per vertex
+     * @param visitNext - scratch bitsets, one word per vertex
+     * @param totals - filled with the total distance from each source to every vertex it reaches
+     * @param reached - filled with the number of vertices each source reaches, including itself
+     * @param vertexTotals - if not null, each vertex's distances from the sources that reach it are added to its entry
+     * @param vertexSquares - if not null, the squares of those distances are added to each vertex's entry
+     * @return - the largest distance from any source of the batch to a vertex it reaches
+     */
+    public static int multiSourceBfs(CSRGraph g, int[] sources, int from, int count, long[] seen, long[] visit,
+                                     long[] visitNext, long[] totals, int[] reached, long[] vertexTotals,
+                                     long[] vertexSquares) {
+        int n = g.numVertices();
+        Arrays.fill(seen, 0, n, 0L);
+        Arrays.fill(visit, 0, n, 0L);
+        Arrays.fill(visitNext, 0, n, 0L);
+        for (int b = 0; b < count; b++) {
+            int s = sources[from + b];
+            seen[s] |= 1L << b;
+            visit[s] |= 1L << b;
+            totals[b] = 0;
+            reached[b] = 1;
+        }
+
+        boolean active = true;
+        int level;
+        for (level = 1; active; level++) {
+            active = false;
+            for (int u = 0; u < n; u++) {
+                long frontier = visit[u];
+                if (frontier == 0) continue;
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.target(e);
+                    long discovered = frontier & ~seen[v];
+                    if (discovered != 0) {
+                        visitNext[v] |= discovered;
+                        seen[v] |= discovered;
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                long discovered = visitNext[v];
+                visit[v] = discovered;
+                if (discovered == 0) continue;
+                visitNext[v] = 0;
+                active = true;
+                if (vertexTotals != null) {
+                    int hits = Long.bitCount(discovered);
+                    vertexTotals[v] += (long) hits * level;
+                    if (vertexSquares != null) vertexSquares[v] += (long) hits * level * level;
+                }
+                while (discovered != 0) { //credit this level to every search that reached v on it
+                    int b = Long.numberOfTrailingZeros(discovered);
+                    totals[b] += level;
+                    reached[b]++;
+                    discovered &= discovered - 1;
+                }
+            }
+        }
+        return level - 2; //the last level discovered nothing and the loop stepped past it
+    }
+
+    /**
+     * Label every vertex with its connected component using a lock-free union-find: workers claim chunks of vertices
+     * and union each vertex with its neighbors, always hooking the larger root under the smaller with a
+     * compare-and-set and halving paths as they go, then a second pass points every vertex straight at its root. Edges
+     * are treated as undirected, so for the symmetric costar graph two actors share a root exactly when BFS from
+     * either one reaches the other.
+     * @param g - graph to label
+     * @param threads - number of worker threads to use
+     * @return - array of vertex index -> smallest vertex index in its connected component
+     */
+    public static int[] componentRoots(CSRGraph g, int threads) {
+        int n = g.numVertices();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            parent.set(v, v);
+        }
+        int workers = Math.max(1, Math.min(threads, (n + UNION_CHUNK - 1) / UNION_CHUNK));
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        runWorkers(() -> {
+            int start;
+            while ((start = nextChunk.getAndAdd(UNION_CHUNK)) < n) {
+                for (int u = start; u < Math.min(n, start + UNION_CHUNK); u++) {
+                    for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                        union(parent, u, g.target(e));
+                    }
+                }
+            }
+        }, workers);
+
+        int[] roots = new int[n];
+        AtomicInteger nextLabel = new AtomicInteger();
+        runWorkers(() -> { //no more unions, so every root is final
+            int start;
+            while ((start = nextLabel.getAndAdd(UNION_CHUNK)) < n) {
+                for (int v = start; v < Math.min(n, start + UNION_CHUNK); v++) {
+                    roots[v] = findRoot(parent, v);
+                }
+            }
+        }, workers);
+        return roots;
+    }
+
+    /**
+     * Helper function for componentRoots: follow parents to the root, halving the path on the way
+     * @param parent - union-find forest
+     * @param v - vertex index
+     * @return - current root of v's tree
+     */
+    private static int findRoot(AtomicIntegerArray parent, int v) {
+        int p;
+        while ((p = parent.get(v)) != v) {
+            int grandparent = parent.get(p);
+            if (grandparent != p) parent.compareAndSet(v, p, grandparent); //losing the race only skips the shortcut
+            v = grandparent;
+        }
+        return v;
+    }
+
+    /**
+     * Helper function for componentRoots: merge the trees of u and v, retrying if another worker moves either root
+     * @param parent - union-find forest
+     * @param u - vertex index
+     * @param v - vertex index
+     */
+    private static void union(AtomicIntegerArray parent, int u, int v) {
+        while (true) {
+            u = findRoot(parent, u);
+            v = findRoot(parent, v);
+            if (u == v) return;
+            if (u < v) { //hook the larger root under the smaller, so roots only ever decrease and no cycle can form
+                int t = u;
+                u = v;
+                v = t;
+            }
+            if (parent.compareAndSet(u, u, v)) return;
+        }
+    }
+
+    /**
+     * @return - worker threads to use for whole-graph computations: the bacon.threads system property if set,
+     * otherwise one per available core
+     */
+    public static int defaultThreads() {
+        return Integer.getInteger("bacon.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Arrays for one shortestPath or constrainedPath query, kept all -1 while idle in the pool. The pool keeps no more
+     * than defaultThreads() of them, as many as the cores can search with at a time; a burst of concurrent queries
+     * allocates the extra scratch it needs and leaves it to the collector.
+     */
+    private static class PathScratch {
+        int[] parentFrom = new int[0], parentTo = new int[0], distFrom = new int[0], distTo = new int[0];
+        int[] queueFrom = new int[0], queueTo = new int[0];
+        long[] costFrom = new long[0];  //constrainedPath: lowest cost found so far to each vertex
+
+        void ensureCapacity(int n) {
+            if (parentFrom.length >= n) return;
+            parentFrom = filled(n);
+            parentTo = filled(n);
+            distFrom = filled(n);
+            distTo = filled(n);
+            queueFrom = new int[n];
+            queueTo = new int[n];
+            costFrom = new long[n];
+            Arrays.fill(costFrom, -1);
+        }
+
+        private static int[] filled(int n) {
+            int[] a = new int[n];
+            Arrays.fill(a, -1);
+            return a;
+        }
+    }
+
+    /**
+     * Run the same worker as several tasks on the shared pool of worker threads and wait for all of them to finish.
+     * Tasks beyond the pool's threads wait for one to free up, so workers must not wait on each other.
+     * @param worker - task each thread runs; workers are expected to split the work among themselves
+     * @param threads - number of tasks
+     */
+    private static void runWorkers(Runnable worker, int threads) {
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(WORKERS.submit(worker));
+            }
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+    }
+
 }
@@ -0,0 +1,312 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Versioned binary snapshot of a loaded game: the builder's ID maps and casts, the packed CSR arrays and the indexes
+ * derived from them, so a warm start maps one file instead of reparsing the text inputs, rebuilding the graph,
+ * labeling its components and sorting its actors by degree and by name. A warm start is still linear in the size
+ * of the game: it copies the arrays out of the file, decodes the name tables and hashes every name and ID back into
+ * the builder's and graph's maps, since a HashMap can't be mapped from a file.
+ *
+ * Layout (big-endian): the magic "BACONSNP", the format version, then the size and modification time of every source
+ * file the snapshot was built from and the VertexOrder its actors are numbered in, then the builder's sections, the
+ * graph's sections and the sections of the degree, component and name indexes as length-prefixed int and long
+ * arrays, byte buffers and string tables. A snapshot whose version, source stamps or order don't match is reported as
+ * stale so the caller can rebuild it.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class GraphSnapshot {
+    private static final long MAGIC = 0x4241434f4e534e50L;  //"BACONSNP"
+    private static final int VERSION = 5;   //2: edge labels as EdgeLabels buffers instead of int arrays; 3: vertex order;
+                                            //4: edge labels in chunks; 5: derived indexes
+
+    private CSRGraph.Builder builder;   //actors, movies and casts the graph was built from
+    private GraphState state;           //the packed graph and its indexes
+
+    private GraphSnapshot(CSRGraph.Builder builder, GraphState state) {
+        this.builder = builder;
+        this.state = state;
+    }
+
+    /**
+     * @return - builder restored from the snapshot, holding every actor, movie and cast that was loaded
+     */
+    public CSRGraph.Builder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * @return - graph restored from the snapshot
+     */
+    public CSRGraph getGraph() {
+        return state.getGraph();
+    }
+
+    /**
+     * @return - state over the restored graph, with the indexes restored too and no cached trees
+     */
+    public GraphState getState() {
+        return state;
+    }
+
+    /**
+     * Write a snapshot of a loaded graph and its indexes
+     * @param fileName - snapshot file to write (replaced atomically once complete)
+     * @param sources - input files the graph was loaded from, whose sizes and modification times are recorded
+     * @param order - name of the VertexOrder the builder's actors were renumbered in
+     * @param builder - builder holding the loaded actors, movies and casts
+     * @param state - state over the graph packed from builder
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void write(String fileName, String[] sources, String order, CSRGraph.Builder builder,
+                             GraphState state) throws IOException {
+        File target = new File(fileName);
+        File temp = new File(fileName + ".tmp");
+        try (Output out = new Output(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))) {
+            out.data.writeLong(MAGIC);
+            out.data.writeInt(VERSION);
+            out.data.writeInt(sources.length);
+            for (String source: sources) {
+                File f = new File(source);
+                out.writeString(source);
+                out.data.writeLong(f.length());
+                out.data.writeLong(f.lastModified());
+            }
+            out.writeString(order);
+            builder.writeTo(out);
+            state.getGraph().writeTo(out);
+            state.writeTo(out);
+        }
+        if (!temp.renameTo(target)) {
+            target.delete();
+            if (!temp.renameTo(target)) throw new IOException("Cannot replace " + fileName);
+        }
+    }
+
+    /**
+     * Read a snapshot if it is current
+     * @param fileName - snapshot file to read
+     * @param sources - input files the snapshot must have been built from, in the same order as when written
+     * @param order - name of the VertexOrder the snapshot's actors must be numbered in
+     * @return - the restored snapshot, or null if there is no snapshot, it is from another format version or order,
+     * or any source file has changed size or modification time since it was written
+     * @throws IOException if the snapshot exists and is current but can't be read
+     */
+    public static GraphSnapshot read(String fileName, String[] sources, String order) throws IOException {
+        if (!new File(fileName).isFile()) return null;
+        try (Input in = new Input(fileName)) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) return null;
+            if (in.readInt() != sources.length) return null;
+            for (String source: sources) {
+                File f = new File(source);
+                String recorded = in.readString();
+                long size = in.readLong(), modified = in.readLong();
+                if (!source.equals(recorded) || f.length() != size || f.lastModified() != modified) return null;
+            }
+            if (!order.equals(in.readString())) return null;
+            CSRGraph.Builder builder = CSRGraph.Builder.readFrom(in);
+            CSRGraph graph = CSRGraph.readFrom(in, builder);
+            return new GraphSnapshot(builder, GraphState.readFrom(in, graph));
+        }
+    }
+
+    /**
+     * Writes the sections of a snapshot
+     */
+    static class Output implements Closeable {
+        private DataOutputStream data;
+        private ByteBuffer chunk = ByteBuffer.allocate(1 << 16);   //int arrays are converted to bytes a chunk at a time
+
+        Output(DataOutputStream data) {
+            this.data = data;
+        }
+
+        void writeInt(int v) throws IOException {
+            data.writeInt(v);
+        }
+
+        /**
+         * write an array as its length followed by its values
+         */
+        void writeInts(int[] values) throws IOException {
+            data.writeInt(values.length);
+            for (int done = 0; done < values.length; done += chunk.capacity() / 4) {
+                int count = Math.min(values.length - done, chunk.capacity() / 4);
+                chunk.clear();
+                chunk.asIntBuffer().put(values, done, count);
+                data.write(chunk.array(), 0, count * 4);
+            }
+        }
+
+        /**
+         * write an array as its length followed by its values
+         */
+        void writeLongs(long[] values) throws IOException {
+            data.writeInt(values.length);
+            for (int done = 0; done < values.length; done += chunk.capacity() / 8) {
+                int count = Math.min(values.length - done, chunk.capacity() / 8);
+                chunk.clear();
+                chunk.asLongBuffer().put(values, done, count);
+                data.write(chunk.array(), 0, count * 8);
+            }
+        }
+
+        /**
+         * write a buffer's contents, from 0 to its capacity, as its length followed by its bytes
+         */
+        void writeBuffer(ByteBuffer buffer) throws IOException {
+            data.writeInt(buffer.capacity());
+            ByteBuffer view = buffer.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                int count = Math.min(view.remaining(), chunk.capacity());
+                view.get(chunk.array(), 0, count);
+                data.write(chunk.array(), 0, count);
+            }
+        }
+
+        /**
+         * write a string as its UTF-8 byte length (-1 for null) followed by its bytes
+         */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                data.writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        /**
+         * write a table of strings as its size followed by each string
+         */
+        void writeStrings(String[] strings) throws IOException {
+            data.writeInt(strings.length);
+            for (String s: strings) {
+                writeString(s);
+            }
+        }
+
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    /**
+     * Reads the sections of a snapshot from a memory-mapped file, a window of up to 1 GiB at a time, bulk-copying
+     * int arrays straight out of the mapping
+     */
+    static class Input implements Closeable {
+        private static final long WINDOW = 1L << 30;
+        private RandomAccessFile file;
+        private FileChannel channel;
+        private long size;
+        private long windowStart;       //file offset of the start of the current mapping
+        private MappedByteBuffer window;
+
+        Input(String fileName) throws IOException {
+            file = new RandomAccessFile(fileName, "r");
+            channel = file.getChannel();
+            size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+        }
+
+        /**
+         * make sure at least n bytes (n <= WINDOW) can be read from the current mapping
+         */
+        private void ensure(int n) throws IOException {
+            if (window.remaining() >= n) return;
+            long position = windowStart + window.position();
+            if (size - position < n) throw new EOFException("Snapshot is truncated");
+            map(position);
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return window.getLong();
+        }
+
+        int[] readInts() throws IOException {
+            int[] values = new int[readInt()];
+            int done = 0;
+            while (done < values.length) {
+                ensure(4);
+                int count = Math.min(values.length - done, window.remaining() / 4);
+                window.asIntBuffer().get(values, done, count);
+                window.position(window.position() + count * 4);
+                done += count;
+            }
+            return values;
+        }
+
+        long[] readLongs() throws IOException {
+            long[] values = new long[readInt()];
+            int done = 0;
+            while (done < values.length) {
+                ensure(8);
+                int count = Math.min(values.length - done, window.remaining() / 8);
+                window.asLongBuffer().get(values, done, count);
+                window.position(window.position() + count * 8);
+                done += count;
+            }
+            return values;
+        }
+
+        /**
+         * read a buffer written by writeBuffer into a new direct buffer, off the heap
+         */
+        ByteBuffer readDirect() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(readInt());
+            while (buffer.hasRemaining()) {
+                ensure(1);
+                ByteBuffer slice = window.slice();
+                slice.limit(Math.min(slice.remaining(), buffer.remaining()));
+                buffer.put(slice);
+                window.position(window.position() + slice.limit());
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            if (length < 0) return null;
+            byte[] bytes = new byte[length];
+            int done = 0;
+            while (done < length) {
+                ensure(1);
+                int count = Math.min(length - done, window.remaining());
+                window.get(bytes, done, count);
+                done += count;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] readStrings() throws IOException {
+            String[] strings = new String[readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+            return strings;
+        }
+
+        public void close() throws IOException {
+            channel.close();
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One immutable version of a loaded game: the actorsToMovies graph, the indexes derived from it and the shortest
+ * path trees searched on it so far. An update never changes a GraphState; it builds the next one and publishes it in
+ * a single step, so a query that picked up a state keeps a consistent view of it while the update runs, and the next
+ * query sees the new state whole.
+ *
+ * The derived data is carried over from the previous state where an update allows: the degree order only moves the
+ * actors whose costars changed; when the graph has only gained actors and edges, component labels are merged and
+ * cached trees are repaired rather than rebuilt; when a credit is retracted, only the cached trees that used a lost
+ * edge are dropped.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class GraphState {
+    private CSRGraph graph;                 //the actorsToMovies graph
+    private DegreeIndex degrees;            //actors of graph ordered by degree
+    private ComponentIndex components;      //connected component of every actor of graph
+    private NameIndex actorNames;           //actors of graph by name, ignoring case
+    private NameIndex movieNames;           //movies of graph by name, ignoring case
+    private Map<String, ShortestPathResult> trees;  //cache: center -> shortest paths from it
+
+    private GraphState(CSRGraph graph, DegreeIndex degrees, ComponentIndex components, NameIndex actorNames,
+                       NameIndex movieNames, Map<String, ShortestPathResult> trees) {
+        this.graph = graph;
+        this.degrees = degrees;
+        this.components = components;
+        this.actorNames = actorNames;
+        this.movieNames = movieNames;
+        this.trees = trees;
+    }
+
+    /**
+     * @param graph - a newly packed graph
+     * @return - state with every index built from scratch and no cached trees
+     */
+    public static GraphState of(CSRGraph graph) {
+        return new GraphState(graph, new DegreeIndex(graph), new ComponentIndex(graph, GraphLibrary.defaultThreads()),
+                NameIndex.actors(graph), NameIndex.movies(graph), new ConcurrentHashMap<String, ShortestPathResult>());
+    }
+
+    /**
+     * Write the indexes to a snapshot; the graph is written before them, and cached trees aren't written
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        degrees.writeTo(out);
+        components.writeTo(out);
+        actorNames.writeTo(out);
+        movieNames.writeTo(out);
+    }
+
+    /**
+     * Read the indexes written by writeTo
+     * @param in - snapshot being read
+     * @param graph - graph restored from the same snapshot
+     * @return - state over graph with the restored indexes and no cached trees
+     * @throws IOException if the snapshot can't be read or doesn't match the graph
+     */
+    static GraphState readFrom(GraphSnapshot.Input in, CSRGraph graph) throws IOException {
+        return new GraphState(graph, DegreeIndex.readFrom(in, graph), ComponentIndex.readFrom(in, graph),
+                NameIndex.readFrom(in, graph::nameOf, graph.numVertices()),
+                NameIndex.readFrom(in, graph::movieName, graph.numMovies()),
+                new ConcurrentHashMap<String, ShortestPathResult>());
+    }
+
+    /**
+     * the next state after the graph was repacked from a builder that only gained actors, movies and credits:
+     * every index is rebuilt except the name indexes, which only merge in the new names, and cached trees are dropped
+     * @param newGraph - graph packed from the same builder as this state's, later
+     * @return - state over newGraph
+     */
+    public GraphState repacked(CSRGraph newGraph) {
+        return new GraphState(newGraph, new DegreeIndex(newGraph),
+                new ComponentIndex(newGraph, GraphLibrary.defaultThreads()),
+                actorNames.extendedTo(newGraph::nameOf, newGraph.numVertices()),
+                movieNames.extendedTo(newGraph::movieName, newGraph.numMovies()),
+                new ConcurrentHashMap<String, ShortestPathResult>());
+    }
+
+    /**
+     * the next state after actors and casts were added, merging component labels and repairing cached trees
+     * @param newGraph - this state's graph plus any number of new actors (at the end) and new edges
+     * @param casts - vertex indices of the actors in each cast whose edges are new
+     * @return - state over newGraph
+     */
+    public GraphState added(CSRGraph newGraph, List<int[]> casts) {
+        Map<String, ShortestPathResult> repaired = new ConcurrentHashMap<String, ShortestPathResult>();
+        for (Map.Entry<String, ShortestPathResult> entry: trees.entrySet()) {
+            ShortestPathResult tree = GraphLibrary.repairShortestPaths(entry.getValue(), newGraph, casts);
+            if (tree != null) repaired.put(entry.getKey(), tree); //a center that wasn't an actor is searched again
+        }
+        int size = 0;
+        for (int[] cast: casts) size += cast.length;
+        int[] changed = new int[size]; //actors who may have gained costars
+        size = 0;
+        for (int[] cast: casts) {
+            System.arraycopy(cast, 0, changed, size, cast.length);
+            size += cast.length;
+        }
+        return new GraphState(newGraph, degrees.updated(newGraph, changed), components.merged(newGraph, casts),
+                actorNames.extendedTo(newGraph::nameOf, newGraph.numVertices()),
+                movieNames.extendedTo(newGraph::movieName, newGraph.numMovies()), repaired);
+    }
+
+    /**
+     * the next state after an actor's credit was retracted. Losing edges can't shorten any distance, so a cached
+     * tree that didn't use a lost edge still holds shortest paths and is kept; the rest are searched again on use.
+     * @param newGraph - this state's graph with some edges (or movies on edges) removed
+     * @param actor - vertex index of the actor whose credit was retracted
+     * @param cast - vertex indices of the rest of the movie's cast, the actor's only possible lost costars
+     * @return - state over newGraph
+     */
+    public GraphState retracted(CSRGraph newGraph, int actor, int[] cast) {
+        List<Integer> lost = new ArrayList<Integer>(); //costars the actor no longer shares any movie with
+        for (int v: cast) {
+            if (v != actor && newGraph.edgeIndex(actor, v) < 0) lost.add(v);
+        }
+        Map<String, ShortestPathResult> kept = new ConcurrentHashMap<String, ShortestPathResult>();
+        for (Map.Entry<String, ShortestPathResult> entry: trees.entrySet()) {
+            ShortestPathResult tree = entry.getValue();
+            if (tree.getSource() == null) continue;
+            boolean usesLostEdge = false;
+            for (int v: lost) {
+                usesLostEdge |= tree.parentOf(v) == actor || tree.parentOf(actor) == v;
+            }
+            if (!usesLostEdge) {
+                kept.put(entry.getKey(), GraphLibrary.repairShortestPaths(tree, newGraph, Collections.<int[]>emptyList()));
+            }
+        }
+        ComponentIndex newComponents = lost.isEmpty() ? components.merged(newGraph, Collections.<int[]>emptyList())
+                : new ComponentIndex(newGraph, GraphLibrary.defaultThreads()); //a lost edge may split a component
+        int[] changed = Arrays.copyOf(cast, cast.length + 1); //actors who may have lost costars
+        changed[cast.length] = actor;
+        return new GraphState(newGraph, degrees.updated(newGraph, changed), newComponents,
+                actorNames.extendedTo(newGraph::nameOf, newGraph.numVertices()),
+                movieNames.extendedTo(newGraph::movieName, newGraph.numMovies()), kept);
+    }
+
+    /**
+     * @return - the actorsToMovies graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return - actors of the graph ordered by degree
+     */
+    public DegreeIndex getDegrees() {
+        return degrees;
+    }
+
+    /**
+     * @return - connected component of every actor of the graph
+     */
+    public ComponentIndex getComponents() {
+        return components;
+    }
+
+    /**
+     * @return - actors of the graph by name, ignoring case
+     */
+    public NameIndex getActorNames() {
+        return actorNames;
+    }
+
+    /**
+     * @return - movies of the graph by name, ignoring case
+     */
+    public NameIndex getMovieNames() {
+        return movieNames;
+    }
+
+    /**
+     * @param center - name of the actor at the root of the tree
+     * @return - shortest path tree from center, searched the first time it is asked for and cached afterwards
+     */
+    public ShortestPathResult getPathTree(String center) {
+        if (Metrics.ENABLED) Metrics.recordCache("pathTree", trees.containsKey(center));
+        return trees.computeIfAbsent(center, c -> GraphLibrary.shortestPaths(graph, c));
+    }
+
+    /**
+     * @param center - name of the actor at the root of the tree
+     * @return - the cached shortest path tree from center, or null if it hasn't been searched
+     */
+    public ShortestPathResult cachedPathTree(String center) {
+        return trees.get(center);
+    }
+
+    /**
+     * drop a cached tree that is no longer needed
+     * @param center - name of the actor at the root of the tree
+     */
+    public void forgetPathTree(String center) {
+        trees.remove(center);
+    }
+}
@@ -0,0 +1,20 @@
+import java.util.Set;
+
+/**
+ * An actor graph whose actors are numbered 0 .. numVertices()-1, so that traversals can keep their state in int
+ * arrays indexed by actor instead of maps keyed by name
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public interface IndexedGraph extends Graph<String, Set<String>> {
+    /**
+     * @param name - actor name
+     * @return - vertex index of that actor, or -1 if there is no such actor
+     */
+    public int indexOf(String name);
+
+    /**
+     * @param u - vertex index
+     * @return - actor name of that vertex
+     */
+    public String nameOf(int u);
+}
@@ -0,0 +1,140 @@
+import java.util.*;
+
+/**
+ * Just enough JSON for line-delimited requests and responses: a reader for one flat object per line whose values are
+ * strings, numbers, booleans or null, and quoting for the strings written back.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class JsonLine {
+    private String text;    //line being read
+    private int pos;        //position of the next character to read
+
+    private JsonLine(String text) {
+        this.text = text;
+    }
+
+    /**
+     * read a flat JSON object
+     * @param line - one line holding the object
+     * @return - map of key -> value (String, Long, Double, Boolean or null), in the order the keys appear
+     * @throws IllegalArgumentException if the line is not a flat JSON object
+     */
+    public static Map<String, Object> parse(String line) {
+        JsonLine reader = new JsonLine(line);
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                object.put(key, reader.readValue());
+            } while (reader.consume(','));
+            reader.expect('}');
+        }
+        reader.skipSpace();
+        if (reader.pos < line.length()) throw reader.error("trailing characters");
+        return object;
+    }
+
+    /**
+     * @param s - string to write, or null
+     * @return - s as a JSON string literal, or null
+     */
+    public static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private Object readValue() {
+        skipSpace();
+        if (pos >= text.length()) throw error("missing value");
+        char c = text.charAt(pos);
+        if (c == '"') return readString();
+        if (text.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+        if (text.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+        if (text.startsWith("null", pos)) { pos += 4; return null; }
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        String number = text.substring(start, pos);
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) return Long.parseLong(number);
+            return Double.parseDouble(number);
+        }
+        catch (NumberFormatException e) {
+            throw error("bad value");
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder s = new StringBuilder();
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') return s.toString();
+            if (c != '\\') {
+                s.append(c);
+                continue;
+            }
+            if (pos >= text.length()) break;
+            char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'b': s.append('\b'); break;
+                case 'f': s.append('\f'); break;
+                case 'n': s.append('\n'); break;
+                case 'r': s.append('\r'); break;
+                case 't': s.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("bad escape");
+                    try {
+                        s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    }
+                    catch (NumberFormatException e) {
+                        throw error("bad escape");
+                    }
+                    pos += 4;
+                    break;
+                default: s.append(escaped); //quote, backslash and slash stand for themselves
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean consume(char c) {
+        skipSpace();
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) throw error("expected '" + c + "'");
+    }
+
+    private IllegalArgumentException error(String problem) {
+        return new IllegalArgumentException("Malformed JSON at character " + pos + ": " + problem);
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with 64 sub-buckets per power of two (about 1.5% precision). Recording a
+ * sample is a few atomic adds and never allocates, so many threads can record into one histogram while it is read.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class LatencyHistogram {
+    private AtomicLongArray counts = new AtomicLongArray(64 * 64);  //bucket -> samples in it
+    private AtomicLong total = new AtomicLong();    //samples recorded
+    private AtomicLong sum = new AtomicLong();      //their total time
+    private AtomicLong max = new AtomicLong();      //the longest
+
+    /**
+     * @param nanos - latency of one sample
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(1, nanos)));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static int bucket(long nanos) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude < 6) return (int) nanos;
+        return (magnitude - 5) * 64 + (int) ((nanos >>> (magnitude - 6)) & 63);
+    }
+
+    private static long lowestOf(int bucket) {
+        if (bucket < 64) return bucket;
+        int magnitude = bucket / 64 + 5;
+        return (64L + bucket % 64) << (magnitude - 6);
+    }
+
+    /**
+     * @return - number of samples recorded
+     */
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * @return - total nanoseconds of every sample recorded
+     */
+    public long sum() {
+        return sum.get();
+    }
+
+    /**
+     * @return - the longest sample, in nanoseconds
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param q - quantile, 0 to 1
+     * @return - latency in nanoseconds that a fraction q of the samples did not exceed (0 if there are none)
+     */
+    public long percentile(double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * total.get()));
+        long seen = 0;
+        for (int b = 0; b < counts.length(); b++) {
+            long count = counts.get(b);
+            seen += count;
+            if (seen >= rank && count > 0) return Math.min(max.get(), lowestOf(b));
+        }
+        return max.get();
+    }
+
+    /**
+     * @return - count, mean and percentiles in microseconds, on one line
+     */
+    public String toString() {
+        long n = count();
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus", n,
+                n == 0 ? 0 : sum() / 1e3 / n, percentile(0.5) / 1e3, percentile(0.9) / 1e3, percentile(0.99) / 1e3,
+                max() / 1e3);
+    }
+}
@@ -0,0 +1,214 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and latency timers for loading and queries, turned on by running with -Dbacon.metrics=true:
+ *
+ * - load.actors, load.movies, load.credits: time to read each input file, with its lines, malformed lines and bytes
+ * - load.pack, load.index, load.snapshot: time to pack the graph, build its indexes, or load a snapshot instead
+ * - load.order: time to pack the loaded graph and renumber its actors for locality
+ * - update.add, update.retract: time to apply an update to a loaded game, and update.patch the part of it spent
+ *   patching the graph
+ * - graph.vertices, graph.edges: size of the graph last packed
+ * - command.X, server.OP: latency of each REPL command and server op
+ * - bfs: time per full search, with the vertices reached, the adjacency entries a top-down search reads, and the
+ *   vertices found at each separation (the frontier sizes)
+ * - bfs.bidirectional, bfs.multiSource, bfs.repair, centers.closest: the other searches
+ * - cache.NAME.hit, cache.NAME.miss: path tree caches of the game, the server and batch runs
+ *
+ * The metrics are shown over JMX as the MXBean "bacon:type=Metrics", and also printed to stderr every N seconds
+ * with -Dbacon.metrics.dump=N.
+ *
+ * ENABLED is a static final constant, so when metrics are off the JIT drops every "if (Metrics.ENABLED)" block at
+ * the call sites and the instrumentation costs nothing; callers check it before working out anything to record.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class Metrics implements MetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("bacon.metrics");
+    private static final long DUMP_SECONDS = Long.getLong("bacon.metrics.dump", 0);
+    private static final int MAX_LEVELS = 64;   //separations whose frontier sizes are kept
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+    private static final Map<String, AtomicLong> gauges = new ConcurrentHashMap<String, AtomicLong>();
+    private static final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<String, LatencyHistogram>();
+    private static final AtomicLongArray frontier = new AtomicLongArray(MAX_LEVELS); //separation -> vertices found at it
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("bacon:type=Metrics"));
+            }
+            catch (JMException e) {
+                System.err.println("Cannot register metrics with JMX.\n" + e.getMessage());
+            }
+            if (DUMP_SECONDS > 0) {
+                ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "metrics-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                dumper.scheduleAtFixedRate(() -> System.err.print(report()), DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private Metrics() {}
+
+    /**
+     * @return - the time now to pass to time() later, or 0 without reading the clock if metrics are off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param name - counter
+     * @param delta - amount to add
+     */
+    public static void count(String name, long delta) {
+        if (!ENABLED) return;
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @param name - gauge
+     * @param value - its new value
+     */
+    public static void set(String name, long value) {
+        if (!ENABLED) return;
+        gauges.computeIfAbsent(name, n -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * @param name - timer
+     * @param startNanos - start() when the timed work began
+     */
+    public static void time(String name, long startNanos) {
+        if (!ENABLED) return;
+        long elapsed = System.nanoTime() - startNanos;
+        timers.computeIfAbsent(name, n -> new LatencyHistogram()).record(elapsed);
+    }
+
+    /**
+     * @param phase - which input file was read: actors, movies or credits
+     * @param stats - line counts from reading it
+     * @param startNanos - start() when reading began
+     */
+    public static void recordLoad(String phase, PipeFileReader.LoadStats stats, long startNanos) {
+        time("load." + phase, startNanos);
+        set("load." + phase + ".lines", stats.getLines());
+        set("load." + phase + ".malformed", stats.getMalformed());
+        set("load." + phase + ".bytes", stats.getBytes());
+    }
+
+    /**
+     * @param graph - a newly packed graph
+     */
+    public static void recordGraph(CSRGraph graph) {
+        set("graph.vertices", graph.numVertices());
+        set("graph.edges", graph.numEdges());
+    }
+
+    /**
+     * @param g - graph searched
+     * @param tree - result of a full BFS
+     * @param startNanos - start() when the search began
+     */
+    public static void recordSearch(CSRGraph g, ShortestPathResult tree, long startNanos) {
+        time("bfs", startNanos);
+        long edges = 0;
+        for (int i = 0; i < tree.reachedCount(); i++) {
+            edges += g.degree(tree.vertexAt(i));
+        }
+        count("bfs.vertices", tree.reachedCount());
+        count("bfs.edges", edges);
+        for (int d = 0; d <= Math.min(tree.maxSeparation(), MAX_LEVELS-1); d++) {
+            frontier.addAndGet(d, tree.levelEnd(d) - tree.levelStart(d));
+        }
+    }
+
+    /**
+     * @param cache - name of the cache
+     * @param hit - whether the entry was found
+     */
+    public static void recordCache(String cache, boolean hit) {
+        count("cache." + cache + (hit ? ".hit" : ".miss"), 1);
+    }
+
+    /**
+     * @return - every metric, one per line, sorted by name
+     */
+    public static String report() {
+        StringBuilder s = new StringBuilder("Metrics at " + new Date() + "\n");
+        for (Map.Entry<String, Long> counter: new TreeMap<String, Long>(counters()).entrySet()) {
+            s.append(counter.getKey()).append(' ').append(counter.getValue());
+            if (counter.getKey().endsWith(".hit")) { //hit rate of a cache
+                String cache = counter.getKey().substring(0, counter.getKey().length() - 4);
+                long misses = counters.containsKey(cache + ".miss") ? counters.get(cache + ".miss").sum() : 0;
+                s.append(String.format(" (hit rate %.1f%%)", 100.0 * counter.getValue() / (counter.getValue() + misses)));
+            }
+            s.append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> gauge: new TreeMap<String, AtomicLong>(gauges).entrySet()) {
+            s.append(gauge.getKey()).append(' ').append(gauge.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> timer: new TreeMap<String, LatencyHistogram>(timers).entrySet()) {
+            s.append(timer.getKey()).append(' ').append(timer.getValue()).append('\n');
+        }
+        LatencyHistogram searches = timers.get("bfs");
+        if (searches != null && searches.count() > 0) {
+            s.append("bfs.frontier (mean vertices at each separation)");
+            for (int d = 0; d < MAX_LEVELS && frontier.get(d) > 0; d++) {
+                s.append(String.format(" %d:%.1f", d, (double) frontier.get(d) / searches.count()));
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+
+    private static Map<String, Long> counters() {
+        Map<String, Long> values = new HashMap<String, Long>();
+        for (Map.Entry<String, LongAdder> counter: counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+        return values;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters();
+    }
+
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> gauge: gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().get());
+        }
+        return values;
+    }
+
+    public Map<String, String> getLatencies() {
+        Map<String, String> values = new HashMap<String, String>();
+        for (Map.Entry<String, LatencyHistogram> timer: timers.entrySet()) {
+            values.put(timer.getKey(), timer.getValue().toString());
+        }
+        return values;
+    }
+
+    public String getReport() {
+        return report();
+    }
+
+    public void reset() {
+        counters.clear();
+        timers.clear();
+        for (int d = 0; d < MAX_LEVELS; d++) {
+            frontier.set(d, 0);
+        }
+    }
+}
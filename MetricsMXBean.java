@@ -0,0 +1,32 @@
+import java.util.Map;
+
+/**
+ * What Metrics shows over JMX, under the name "bacon:type=Metrics"
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public interface MetricsMXBean {
+    /**
+     * @return - counter name -> value
+     */
+    public Map<String, Long> getCounters();
+
+    /**
+     * @return - gauge name -> last value set
+     */
+    public Map<String, Long> getGauges();
+
+    /**
+     * @return - timer name -> count, mean and percentiles
+     */
+    public Map<String, String> getLatencies();
+
+    /**
+     * @return - every metric, one per line
+     */
+    public String getReport();
+
+    /**
+     * zero every counter and timer
+     */
+    public void reset();
+}
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Case-insensitive lookup of actor or movie names by exact name, prefix or edit distance, for resolving what a player
+ * typed. The index is an int array of indices sorted by case-folded name; the names themselves stay where the
+ * graph keeps them, so the index costs 12 bytes per name - the index and a key packing the first few folded
+ * characters, which settles most comparisons without following a reference to the name - instead of another map
+ * entry and string per name.
+ *
+ * Exact and prefix lookups are binary searches. Fuzzy lookup walks the sorted names as if they were a trie: names
+ * next to each other share a prefix, so each one only extends the Levenshtein table of the one before past their
+ * common prefix, and once every entry of a row is over the distance allowed, every name starting with that prefix is
+ * skipped with one more binary search.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class NameIndex {
+    private static final int KEY_CHARS = 4;     //leading folded characters packed into each key
+
+    private IntFunction<String> names;  //index -> name, as the graph stores it
+    private int[] order;                //indices sorted by case-folded name
+    private long[] keys;                //keys[i] = first KEY_CHARS folded characters of the name of order[i]
+
+    private NameIndex(IntFunction<String> names, int[] order, long[] keys) {
+        this.names = names;
+        this.order = order;
+        this.keys = keys;
+    }
+
+    /**
+     * @param graph - graph whose actors to index
+     * @return - index of the graph's actor names, giving vertex indices
+     */
+    public static NameIndex actors(CSRGraph graph) {
+        return build(graph::nameOf, graph.numVertices());
+    }
+
+    /**
+     * @param graph - graph whose movies to index
+     * @return - index of the graph's movie names, giving dense movie indices
+     */
+    public static NameIndex movies(CSRGraph graph) {
+        return build(graph::movieName, graph.numMovies());
+    }
+
+    /**
+     * Write the sorted order and keys to a snapshot; the names are written with the graph
+     * @param out - snapshot being written
+     * @throws IOException if the snapshot can't be written
+     */
+    void writeTo(GraphSnapshot.Output out) throws IOException {
+        out.writeInts(order);
+        out.writeLongs(keys);
+    }
+
+    /**
+     * Read the order and keys written by writeTo
+     * @param in - snapshot being read
+     * @param graphNames - index -> name of the graph restored from the same snapshot
+     * @param count - number of names in that graph, which may have gained movies the index's graph didn't have
+     * @return - the restored index
+     * @throws IOException if the snapshot can't be read or doesn't match the graph
+     */
+    static NameIndex readFrom(GraphSnapshot.Input in, IntFunction<String> graphNames, int count) throws IOException {
+        int[] order = in.readInts();
+        long[] keys = in.readLongs();
+        if (order.length != keys.length || order.length > count) {
+            throw new IOException("Snapshot name index doesn't match its graph");
+        }
+        return new NameIndex(graphNames, order, keys).extendedTo(graphNames, count); //merges any names added unpacked
+    }
+
+    private static NameIndex build(IntFunction<String> names, int count) {
+        NameIndex index = new NameIndex(names, new int[0], new long[0]);
+        return index.extendedTo(names, count);
+    }
+
+    /**
+     * the index of a graph that only gained names at the end, merging them in instead of sorting everything again
+     * @param graphNames - index -> name of the new graph, the same as this index's for the indices it has
+     * @param count - number of names in the new graph
+     * @return - index over all count names
+     */
+    public NameIndex extendedTo(IntFunction<String> graphNames, int count) {
+        IntFunction<String> newNames = i -> graphNames.apply(i) == null ? "" : graphNames.apply(i); //IDs never named
+        if (count == order.length) return new NameIndex(newNames, order, keys);
+        int[] added = new int[count - order.length];
+        long[] addedKeys = new long[added.length];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = order.length + i;
+            addedKeys[i] = keyOf(newNames.apply(added[i]));
+        }
+        sort(added, addedKeys, 0, added.length, new int[added.length], new long[added.length], newNames);
+        int[] merged = new int[count];
+        long[] mergedKeys = new long[count];
+        int i = 0, j = 0;
+        for (int k = 0; k < count; k++) {
+            if (j == added.length || (i < order.length
+                    && compare(newNames, order[i], keys[i], added[j], addedKeys[j]) <= 0)) {
+                mergedKeys[k] = keys[i];
+                merged[k] = order[i++];
+            }
+            else {
+                mergedKeys[k] = addedKeys[j];
+                merged[k] = added[j++];
+            }
+        }
+        return new NameIndex(newNames, merged, mergedKeys);
+    }
+
+    /**
+     * merge sort of indices by name, without boxing them
+     * @param a - indices to sort
+     * @param k - key of each index, moved along with it
+     * @param from - first position to sort
+     * @param to - position after the last
+     * @param scratch - room for a's positions from..to
+     * @param scratchKeys - room for k's positions from..to
+     * @param names - index -> name
+     */
+    private static void sort(int[] a, long[] k, int from, int to, int[] scratch, long[] scratchKeys,
+                             IntFunction<String> names) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(a, k, from, mid, scratch, scratchKeys, names);
+        sort(a, k, mid, to, scratch, scratchKeys, names);
+        if (compare(names, a[mid-1], k[mid-1], a[mid], k[mid]) <= 0) return; //already in order
+        System.arraycopy(a, from, scratch, from, to - from);
+        System.arraycopy(k, from, scratchKeys, from, to - from);
+        int i = from, j = mid;
+        for (int p = from; p < to; p++) {
+            if (j == to || (i < mid && compare(names, scratch[i], scratchKeys[i], scratch[j], scratchKeys[j]) <= 0)) {
+                k[p] = scratchKeys[i];
+                a[p] = scratch[i++];
+            }
+            else {
+                k[p] = scratchKeys[j];
+                a[p] = scratch[j++];
+            }
+        }
+    }
+
+    /**
+     * @param name - a name
+     * @return - its first KEY_CHARS folded characters, 16 bits each, padded with zeros, so that keys compared unsigned
+     * order names the way their first characters do
+     */
+    private static long keyOf(String name) {
+        long key = 0;
+        for (int i = 0; i < KEY_CHARS; i++) {
+            key = key << 16 | (i < name.length() ? fold(name.charAt(i)) : 0);
+        }
+        return key;
+    }
+
+    /**
+     * compare two names by key, reading the names themselves only when the keys tie
+     */
+    private static int compare(IntFunction<String> names, int a, long keyA, int b, long keyB) {
+        if (keyA != keyB) return Long.compareUnsigned(keyA, keyB);
+        return compareNames(names.apply(a), names.apply(b));
+    }
+
+    /**
+     * case-folded order, with names that differ only in case ordered exactly so the order is total
+     */
+    private static int compareNames(String a, String b) {
+        int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+        return c != 0 ? c : a.compareTo(b);
+    }
+
+    private static char fold(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c; //most names are ASCII
+        return Character.toLowerCase(Character.toUpperCase(c)); //as String.CASE_INSENSITIVE_ORDER compares
+    }
+
+    /**
+     * @return - number of names indexed
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * @param i - position in sorted order, 0 to size()-1
+     * @return - index of the i-th name in case-insensitive order
+     */
+    public int indexAt(int i) {
+        return order[i];
+    }
+
+    /**
+     * Helper function for the lookups: first position whose name's first length folded characters are not below
+     * key's (the whole name if it is shorter)
+     * @param key - name or prefix
+     * @param length - number of characters of the names to compare
+     * @param upper - true to find the first position above key instead
+     * @param from - first position to search
+     * @return - position in order
+     */
+    private int search(String key, int length, boolean upper, int from) {
+        long mask = length >= KEY_CHARS ? -1L : ~(-1L >>> (16 * length)); //the first length characters of a key
+        long packed = keyOf(key) & mask;
+        int lo = from, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long probe = keys[mid] & mask;
+            int c = probe != packed ? Long.compareUnsigned(probe, packed) //decided without reading the name
+                    : comparePrefix(names.apply(order[mid]), key, length);
+            if (c < 0 || (upper && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int comparePrefix(String name, String key, int length) {
+        int n = Math.min(length, name.length()), m = Math.min(length, key.length());
+        for (int i = 0; i < Math.min(n, m); i++) {
+            char a = fold(name.charAt(i)), b = fold(key.charAt(i));
+            if (a != b) return a - b;
+        }
+        return n - m;
+    }
+
+    /**
+     * resolve a typed name: the exact name if there is one, otherwise the only name equal to it ignoring case
+     * @param typed - name as typed
+     * @param exact - index of the exact name, or -1 (the graph already maps names to indices)
+     * @return - index of the name, or -1 if there is no match or the case-insensitive match is ambiguous
+     */
+    public int resolve(String typed, int exact) {
+        if (exact >= 0) return exact;
+        int from = search(typed, Integer.MAX_VALUE, false, 0), to = search(typed, Integer.MAX_VALUE, true, from);
+        return to - from == 1 ? order[from] : -1;
+    }
+
+    /**
+     * @param prefix - start of the names wanted, in any case
+     * @param limit - most names to return
+     * @return - indices of names starting with prefix ignoring case, in alphabetical order
+     */
+    public int[] withPrefix(String prefix, int limit) {
+        int from = search(prefix, prefix.length(), false, 0);
+        int to = Math.min(search(prefix, prefix.length(), true, from), from + limit);
+        return Arrays.copyOfRange(order, from, to);
+    }
+
+    /**
+     * @param typed - name as typed
+     * @param maxDistance - most single-character insertions, deletions and substitutions allowed, ignoring case
+     * @param limit - most names to return
+     * @return - indices of the names closest to typed within maxDistance, closest first, then alphabetical
+     */
+    public int[] closest(String typed, int maxDistance, int limit) {
+        int m = typed.length();
+        char[] key = new char[m];
+        for (int j = 0; j < m; j++) {
+            key[j] = fold(typed.charAt(j));
+        }
+        List<int[]> found = new ArrayList<int[]>(); //{distance, position}
+        int[][] rows = new int[16][]; //rows[d] = distances from typed to the first d characters of the current name
+        rows[0] = new int[m+1];
+        for (int j = 0; j <= m; j++) {
+            rows[0][j] = j;
+        }
+        String previous = "";
+        int valid = 0; //rows 0..valid hold the table of previous
+        int i = 0;
+        while (i < order.length) {
+            String name = names.apply(order[i]);
+            int depth = 0;
+            while (depth < valid && depth < name.length() && fold(name.charAt(depth)) == fold(previous.charAt(depth))) {
+                depth++;
+            }
+            boolean pruned = false;
+            while (depth < name.length()) { //extend the table by one character of name
+                if (depth + 1 >= rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+                if (rows[depth+1] == null) rows[depth+1] = new int[m+1];
+                int[] above = rows[depth], row = rows[depth+1];
+                char c = fold(name.charAt(depth));
+                row[0] = depth + 1;
+                int best = row[0];
+                for (int j = 1; j <= m; j++) {
+                    row[j] = Math.min(Math.min(row[j-1], above[j]) + 1, above[j-1] + (key[j-1] == c ? 0 : 1));
+                    best = Math.min(best, row[j]);
+                }
+                depth++;
+                if (best > maxDistance) { //no name starting with these characters can come close enough
+                    pruned = true;
+                    break;
+                }
+            }
+            previous = name;
+            valid = depth;
+            if (pruned) {
+                i = search(name, depth, true, i);
+                continue;
+            }
+            if (rows[name.length()][m] <= maxDistance) found.add(new int[] {rows[name.length()][m], i});
+            i++;
+        }
+        found.sort((a, b) -> a[0] != b[0] ? a[0] - b[0] : a[1] - b[1]);
+        int[] closest = new int[Math.min(limit, found.size())];
+        for (int k = 0; k < closest.length; k++) {
+            closest[k] = order[found.get(k)[1]];
+        }
+        return closest;
+    }
+
+    /**
+     * @param typed - name as typed
+     * @param limit - most names to return
+     * @return - indices of names that may be what was meant: the closest by edit distance, or failing that the names
+     * starting with what was typed
+     */
+    public int[] suggestions(String typed, int limit) {
+        int[] close = closest(typed, Math.min(3, Math.max(1, (typed.length() + 2) / 4)), limit);
+        return close.length > 0 ? close : withPrefix(typed, limit);
+    }
+}
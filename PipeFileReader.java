@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for the pipe-delimited input files (actors.txt, movies.txt, movie-actors.txt). The file is
+ * memory-mapped a large window at a time and parsed straight from the mapped bytes: integers are accumulated digit
+ * by digit and each name is decoded into a String exactly once, so no per-line String, array or regex is created.
+ * Lines that can't be parsed are counted rather than printed.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class PipeFileReader {
+    private static final long WINDOW = 1L << 30;       //bytes mapped at a time (a window always ends on a line break)
+    private static final int MAX_NAME_BYTES = 1 << 16;  //longer name fields are treated as malformed
+
+    /**
+     * Receives the lines of an "id|name" file
+     */
+    public interface IdNameHandler {
+        void accept(int id, String name);
+    }
+
+    /**
+     * Receives the lines of an "id|id" file
+     */
+    public interface IdPairHandler {
+        void accept(int first, int second);
+    }
+
+    /**
+     * Line and byte counts from reading one file
+     */
+    public static class LoadStats {
+        private long lines;         //non-blank lines seen
+        private long malformed;     //lines skipped because they couldn't be parsed
+        private long bytes;         //size of the file
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getMalformed() {
+            return malformed;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return lines + " lines (" + malformed + " malformed), " + bytes + " bytes";
+        }
+    }
+
+    /**
+     * Read a file of "id|name" lines, e.g. actors.txt or movies.txt
+     * @param fileName - file to read
+     * @param handler - called with every well-formed line
+     * @return - line counts for the file
+     * @throws IOException if the file can't be opened or read
+     */
+    public static LoadStats readIdNames(String fileName, IdNameHandler handler) throws IOException {
+        return read(fileName, handler, null);
+    }
+
+    /**
+     * Read a file of "id|id" lines, e.g. movie-actors.txt
+     * @param fileName - file to read
+     * @param handler - called with every well-formed line, in file order
+     * @return - line counts for the file
+     * @throws IOException if the file can't be opened or read
+     */
+    public static LoadStats readIdPairs(String fileName, IdPairHandler handler) throws IOException {
+        return read(fileName, null, handler);
+    }
+
+    /**
+     * Map the file window by window and parse every line; exactly one of the handlers is non-null
+     */
+    private static LoadStats read(String fileName, IdNameHandler names, IdPairHandler pairs) throws IOException {
+        LoadStats stats = new LoadStats();
+        byte[] nameBytes = new byte[MAX_NAME_BYTES];
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            stats.bytes = size;
+            long windowStart = 0;
+            while (windowStart < size) {
+                long length = Math.min(WINDOW, size - windowStart);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                int limit = (int) length;
+                if (windowStart + length < size) { //stop this window at its last line break, the rest goes in the next
+                    while (limit > 0 && buffer.get(limit-1) != '\n') limit--;
+                    if (limit == 0) throw new IOException("Line longer than " + WINDOW + " bytes in " + fileName);
+                }
+
+                int pos = 0;
+                while (pos < limit) {
+                    int lineEnd = pos;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+                    int end = lineEnd;
+                    if (end > pos && buffer.get(end-1) == '\r') end--;
+                    if (end > pos) {
+                        stats.lines++;
+                        if (!parseLine(buffer, pos, end, names, pairs, nameBytes)) stats.malformed++;
+                    }
+                    pos = lineEnd + 1;
+                }
+                windowStart += limit;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Parse one line (without its line break) and hand it to the handler
+     * @return - true if the line was well-formed
+     */
+    private static boolean parseLine(MappedByteBuffer buffer, int start, int end, IdNameHandler names,
+                                     IdPairHandler pairs, byte[] nameBytes) {
+        int pipe = start;
+        while (pipe < end && buffer.get(pipe) != '|') pipe++;
+        if (pipe == end) return false;
+        long id = parseInt(buffer, start, pipe);
+        if (id == Long.MIN_VALUE) return false;
+
+        int fieldEnd = pipe + 1; //second field runs to the next pipe or the end of the line
+        while (fieldEnd < end && buffer.get(fieldEnd) != '|') fieldEnd++;
+        if (pairs != null) {
+            long second = parseInt(buffer, pipe + 1, fieldEnd);
+            if (second == Long.MIN_VALUE) return false;
+            pairs.accept((int) id, (int) second);
+            return true;
+        }
+
+        int length = fieldEnd - (pipe + 1);
+        if (length > MAX_NAME_BYTES) return false;
+        for (int i = 0; i < length; i++) {
+            nameBytes[i] = buffer.get(pipe + 1 + i);
+        }
+        names.accept((int) id, new String(nameBytes, 0, length, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Parse a base-10 int directly from bytes
+     * @return - the value, or Long.MIN_VALUE if the field is empty, has a non-digit or doesn't fit in an int
+     */
+    private static long parseInt(MappedByteBuffer buffer, int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        if (negative) start++;
+        if (start == end) return Long.MIN_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return Long.MIN_VALUE;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return Long.MIN_VALUE;
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+}
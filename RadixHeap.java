@@ -0,0 +1,85 @@
+import java.util.*;
+
+/**
+ * Monotone priority queue of int items keyed by non-negative longs, for Dijkstra's algorithm: no key pushed may be
+ * below the last key popped. Items go into 65 buckets by the highest bit in which their key differs from the last
+ * key popped. Popping empties bucket 0 (keys equal to the last) and, when that runs out, spreads the lowest non-empty
+ * bucket into the buckets below it around that bucket's minimum; each item moves down at most 64 times in all, so a
+ * push and pop cost O(log of the key range) amortized, with no comparisons between items and no boxing.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class RadixHeap {
+    private int[][] items = new int[65][];      //bucket -> its items
+    private long[][] keys = new long[65][];     //bucket -> the key of each of its items
+    private int[] sizes = new int[65];          //bucket -> number of items in it
+    private long last;                          //last key popped (0 before the first pop)
+    private int size;                           //items in every bucket
+
+    public RadixHeap() {
+        for (int b = 0; b < 65; b++) {
+            items[b] = new int[4];
+            keys[b] = new long[4];
+        }
+    }
+
+    /**
+     * @param item - item to add
+     * @param key - its key, at least the last key popped
+     * @throws IllegalArgumentException if the key is below the last key popped
+     */
+    public void push(int item, long key) {
+        if (key < last) throw new IllegalArgumentException("Key " + key + " is below the last key popped, " + last);
+        add(bucket(key), item, key);
+        size++;
+    }
+
+    private int bucket(long key) {
+        return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void add(int b, int item, long key) {
+        if (sizes[b] == items[b].length) {
+            items[b] = Arrays.copyOf(items[b], sizes[b] * 2);
+            keys[b] = Arrays.copyOf(keys[b], sizes[b] * 2);
+        }
+        items[b][sizes[b]] = item;
+        keys[b][sizes[b]++] = key;
+    }
+
+    /**
+     * @return - an item with the smallest key; lastKey() is then its key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int pop() {
+        if (size == 0) throw new NoSuchElementException("Heap is empty");
+        if (sizes[0] == 0) {
+            int b = 1;
+            while (sizes[b] == 0) b++;
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < sizes[b]; i++) {
+                min = Math.min(min, keys[b][i]);
+            }
+            last = min;
+            for (int i = 0; i < sizes[b]; i++) { //every key of bucket b now differs from last in a lower bit
+                add(bucket(keys[b][i]), items[b][i], keys[b][i]);
+            }
+            sizes[b] = 0;
+        }
+        size--;
+        return items[0][--sizes[0]];
+    }
+
+    /**
+     * @return - key of the item popped last
+     */
+    public long lastKey() {
+        return last;
+    }
+
+    /**
+     * @return - whether there are no items left
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.*;
+
+/**
+ * Result of a BFS over an IndexedGraph, kept as int arrays instead of a materialized tree: each actor's parent and
+ * distance from the source, plus every actor bucketed by separation. Distance lookups, reachable counts and the
+ * average separation are O(1), and a path to an actor is rebuilt in O(length of the path).
+ *
+ * BFS visits actors in order of separation, so the visit order is already a bucketed index: the actors at separation
+ * d are the contiguous slice levelStart(d) .. levelEnd(d)-1 of it. The unreachable actors are appended after the
+ * reached ones as one more bucket, so "everyone between separations low and high" and "everyone unreachable" are
+ * slices, with no sort or per-actor lookup.
+ *
+ * The result also implements Graph as a read-only view of the shortest path tree (edges point from each actor
+ * towards the source, labeled with the movies they share), so it can be passed anywhere a path tree from
+ * GraphLibrary.bfs is expected.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class ShortestPathResult implements Graph<String, Set<String>> {
+    private IndexedGraph graph;     //graph that was searched
+    private int source;             //vertex index of the root, or -1 if the root is not in the graph
+    private int[] parent;           //vertex index -> parent in the tree, -1 for the root and unreached vertices
+    private int[] distance;         //vertex index -> distance from the root, -1 for unreached vertices
+    private int[] order;            //reached vertex indices in BFS order, followed by the unreachable ones
+    private int[] levelStarts;      //separation d -> first position of that separation's actors in order
+    private int reached;            //number of vertices reached, including the root
+    private long totalDistance;     //sum of the distances of all reached vertices
+    private int[] childOffsets;     //built on first use: children of v are children[childOffsets[v]..childOffsets[v+1]-1]
+    private int[] children;
+
+    /**
+     * @param graph - graph that was searched
+     * @param source - vertex index of the root, or -1 for an empty result
+     * @param parent - parent of each vertex, -1 for the root and unreached vertices
+     * @param distance - distance of each vertex from the root, -1 for unreached vertices
+     * @param order - reached vertices in BFS order (length numVertices; the rest is filled with the unreachable ones)
+     * @param reached - number of entries of order filled by the BFS
+     */
+    public ShortestPathResult(IndexedGraph graph, int source, int[] parent, int[] distance, int[] order, int reached) {
+        this.graph = graph;
+        this.source = source;
+        this.parent = parent;
+        this.distance = distance;
+        this.order = order;
+        this.reached = reached;
+        int levels = reached == 0 ? 0 : distance[order[reached-1]] + 1;
+        levelStarts = new int[levels+1];
+        for (int i = 0; i < reached; i++) {
+            totalDistance += distance[order[i]];
+            levelStarts[distance[order[i]]+1] = i+1; //ends up as one past the last actor at each separation
+        }
+        int unreached = reached;
+        for (int v = 0; v < graph.numVertices(); v++) {
+            if (distance[v] < 0) order[unreached++] = v;
+        }
+    }
+
+    /**
+     * @return - graph that was searched
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return - name of the root of the search, or null if the root was not in the graph
+     */
+    public String getSource() {
+        return source < 0 ? null : graph.nameOf(source);
+    }
+
+    /**
+     * @param actor - actor name
+     * @return - separation of the actor from the root, or -1 if there is no path
+     */
+    public int distanceTo(String actor) {
+        int v = graph.indexOf(actor);
+        return v < 0 ? -1 : distance[v];
+    }
+
+    /**
+     * @param v - vertex index
+     * @return - separation of the vertex from the root, or -1 if there is no path
+     */
+    public int distanceTo(int v) {
+        return distance[v];
+    }
+
+    /**
+     * @param v - vertex index
+     * @return - parent of the vertex in the tree, or -1 for the root and unreached vertices
+     */
+    public int parentOf(int v) {
+        return parent[v];
+    }
+
+    /**
+     * @param i - position in BFS order, less than reachedCount()
+     * @return - vertex index of the i-th vertex reached
+     */
+    public int reachedVertex(int i) {
+        return order[i];
+    }
+
+    /**
+     * @return - largest separation of any reachable actor from the root (-1 for an empty result)
+     */
+    public int maxSeparation() {
+        return levelStarts.length - 2;
+    }
+
+    /**
+     * @param separation - separation from the root
+     * @return - position in the order of the first actor at that separation or more
+     */
+    public int levelStart(int separation) {
+        return levelStarts[Math.max(0, Math.min(separation, levelStarts.length-1))];
+    }
+
+    /**
+     * @param separation - separation from the root
+     * @return - position in the order one past the last actor at that separation or less
+     */
+    public int levelEnd(int separation) {
+        return separation < 0 ? 0 : levelStarts[Math.min(separation+1, levelStarts.length-1)];
+    }
+
+    /**
+     * @param i - position in the order: below reachedCount() for reached actors, from reachedCount() up to
+     *          numVertices of the graph for unreachable ones
+     * @return - vertex index of the actor at that position
+     */
+    public int vertexAt(int i) {
+        return order[i];
+    }
+
+    /**
+     * @return - number of actors with no path to the root
+     */
+    public int unreachableCount() {
+        return graph.numVertices() - reached;
+    }
+
+    /**
+     * @return - number of actors reachable from the root, including the root
+     */
+    public int reachedCount() {
+        return reached;
+    }
+
+    /**
+     * @return - average separation of the reached actors from the root (NaN if the root has no neighbors)
+     */
+    public double averageSeparation() {
+        return (double) totalDistance / (reached-1);
+    }
+
+    /**
+     * Path from the root to an actor, built by walking parents into a list sized to the distance
+     * @param actor - the actor at the end of the path
+     * @return - list of actor names from the root to actor, or an empty list if there is no path
+     */
+    public List<String> pathTo(String actor) {
+        int v = graph.indexOf(actor);
+        if (v < 0 || distance[v] < 0) {
+            return new ArrayList<String>();
+        }
+        String[] path = new String[distance[v]+1];
+        for (int i = path.length-1; i >= 0; i--, v = parent[v]) {
+            path[i] = graph.nameOf(v);
+        }
+        return new ArrayList<String>(Arrays.asList(path));
+    }
+
+    // ---- Graph interface: read-only view of the tree ----
+
+    public int numVertices() {
+        return reached;
+    }
+
+    public int numEdges() {
+        return Math.max(0, reached-1);
+    }
+
+    public Iterable<String> vertices() {
+        return () -> new Iterator<String>() {
+            int i = 0;
+            public boolean hasNext() {
+                return i < reached;
+            }
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return graph.nameOf(order[i++]);
+            }
+        };
+    }
+
+    public boolean hasVertex(String v) {
+        return distanceTo(v) >= 0;
+    }
+
+    public boolean hasEdge(String u, String v) {
+        int ui = graph.indexOf(u), vi = graph.indexOf(v);
+        return ui >= 0 && vi >= 0 && parent[ui] == vi;
+    }
+
+    public Set<String> getLabel(String u, String v) {
+        return hasEdge(u, v) ? graph.getLabel(u, v) : null;
+    }
+
+    public int outDegree(String u) {
+        return parent[treeIndex(u)] >= 0 ? 1 : 0;
+    }
+
+    public int inDegree(String u) {
+        int v = treeIndex(u);
+        buildChildren();
+        return childOffsets[v+1] - childOffsets[v];
+    }
+
+    public Iterable<String> outNeighbors(String u) {
+        int v = treeIndex(u);
+        return parent[v] < 0 ? Collections.<String>emptyList() : Collections.singletonList(graph.nameOf(parent[v]));
+    }
+
+    public Iterable<String> inNeighbors(String u) {
+        int v = treeIndex(u);
+        buildChildren();
+        List<String> names = new ArrayList<String>(childOffsets[v+1] - childOffsets[v]);
+        for (int i = childOffsets[v]; i < childOffsets[v+1]; i++) {
+            names.add(graph.nameOf(children[i]));
+        }
+        return names;
+    }
+
+    public void insertVertex(String v) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    public void insertDirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    public void insertUndirected(String u, String v, Set<String> e) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    public void removeVertex(String v) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    public void removeDirected(String u, String v) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    public void removeUndirected(String u, String v) {
+        throw new UnsupportedOperationException("ShortestPathResult is read-only");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("Shortest path tree from " + getSource() + ": " + reached + " vertices\n");
+        for (int i = 0; i < reached; i++) {
+            int v = order[i];
+            s.append(graph.nameOf(v)).append(" -> ").append(parent[v] < 0 ? "[]" : "[" + graph.nameOf(parent[v]) + "]")
+                    .append("\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * @param u - actor name
+     * @return - vertex index of u
+     * @throws IllegalArgumentException if u is not in the tree
+     */
+    private int treeIndex(String u) {
+        int v = graph.indexOf(u);
+        if (v < 0 || distance[v] < 0) throw new IllegalArgumentException("No such vertex: " + u);
+        return v;
+    }
+
+    /**
+     * Index the children of every vertex with a counting sort over the parent array, the first time they're asked for
+     */
+    private synchronized void buildChildren() {
+        if (children != null) return;
+        int n = graph.numVertices();
+        int[] offsets = new int[n+1];
+        for (int i = 0; i < reached; i++) {
+            if (parent[order[i]] >= 0) offsets[parent[order[i]]+1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v+1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] kids = new int[Math.max(0, reached-1)];
+        for (int i = 0; i < reached; i++) {
+            int v = order[i];
+            if (parent[v] >= 0) kids[fill[parent[v]]++] = v;
+        }
+        childOffsets = offsets;
+        children = kids;
+    }
+}
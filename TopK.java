@@ -0,0 +1,172 @@
+/**
+ * The k best-scoring vertices seen so far, kept in a bounded binary heap of primitive arrays whose root is the worst
+ * of the k. Offering a vertex that can't beat the root is one comparison, so picking k of n scores costs O(n log k)
+ * with no boxing and no full sort. Scores compare as in Double.compare, so NaN counts as the largest score.
+ *
+ * Offers are synchronized so that worker threads can share one TopK, and threshold can be read without locking to
+ * prune candidates that can no longer enter it.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class TopK {
+    private boolean smallest;           //true to keep the k smallest scores, false for the k largest
+    private int[] vertices;             //heap of vertex indices, worst at the root
+    private double[] scores;            //score of each heap entry
+    private int size;                   //number of entries in the heap
+    private volatile double threshold;  //score a vertex must beat to enter, once the heap is full
+
+    /**
+     * @param k - number of vertices to keep
+     * @param smallest - true to keep the k smallest scores, false for the k largest
+     */
+    public TopK(int k, boolean smallest) {
+        this.smallest = smallest;
+        vertices = new int[Math.max(0, k)];
+        scores = new double[Math.max(0, k)];
+        threshold = k > 0 ? (smallest ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY) : Double.NaN;
+    }
+
+    /**
+     * pick the k best of a set of candidates
+     * @param candidates - vertex indices to choose from
+     * @param scores - score of each candidate, in the same order
+     * @param k - number of vertices wanted
+     * @param smallest - true for the k smallest scores, false for the k largest
+     * @return - the chosen vertices and their scores
+     */
+    public static TopK select(int[] candidates, double[] scores, int k, boolean smallest) {
+        TopK top = new TopK(Math.min(k, candidates.length), smallest);
+        for (int i = 0; i < candidates.length; i++) {
+            top.offer(candidates[i], scores[i]);
+        }
+        return top;
+    }
+
+    /**
+     * @param v - vertex index
+     * @param score - its score
+     * @return - true if v is now one of the k best
+     */
+    public synchronized boolean offer(int v, double score) {
+        if (vertices.length == 0) return false;
+        if (size < vertices.length) {
+            vertices[size] = v;
+            scores[size] = score;
+            siftUp(size++);
+        }
+        else if (worse(scores[0], score)) {
+            vertices[0] = v;
+            scores[0] = score;
+            siftDown(0);
+        }
+        else {
+            return false;
+        }
+        if (size == vertices.length) threshold = scores[0];
+        return true;
+    }
+
+    /**
+     * @return - score a vertex has to beat to enter: the worst kept score once k vertices are kept, otherwise
+     * infinitely bad
+     */
+    public double threshold() {
+        return threshold;
+    }
+
+    /**
+     * @return - number of vertices kept
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return - the kept vertex indices, best first
+     */
+    public synchronized int[] vertices() {
+        int[] positions = bestFirst();
+        int[] best = new int[size];
+        for (int i = 0; i < size; i++) {
+            best[i] = vertices[positions[i]];
+        }
+        return best;
+    }
+
+    /**
+     * @return - the kept scores, best first (in the same order as vertices)
+     */
+    public synchronized double[] scores() {
+        int[] positions = bestFirst();
+        double[] best = new double[size];
+        for (int i = 0; i < size; i++) {
+            best[i] = scores[positions[i]];
+        }
+        return best;
+    }
+
+    /**
+     * Helper function for vertices and scores: heap sort a copy of the heap's positions, leaving the heap untouched
+     * @return - heap positions ordered best first
+     */
+    private int[] bestFirst() {
+        int[] heap = new int[size];
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+        }
+        int[] best = new int[size];
+        for (int n = size; n > 0; n--) { //pop the worst into the back until the copy is empty
+            best[n-1] = heap[0];
+            heap[0] = heap[n-1];
+            for (int i = 0; ; ) {
+                int worst = i, l = 2*i + 1, r = l + 1;
+                if (l < n-1 && worse(scores[heap[l]], scores[heap[worst]])) worst = l;
+                if (r < n-1 && worse(scores[heap[r]], scores[heap[worst]])) worst = r;
+                if (worst == i) break;
+                int t = heap[i];
+                heap[i] = heap[worst];
+                heap[worst] = t;
+                i = worst;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param a - score
+     * @param b - score
+     * @return - true if a ranks below b
+     */
+    private boolean worse(double a, double b) {
+        int c = Double.compare(a, b);
+        return smallest ? c > 0 : c < 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int p = (i-1) / 2;
+            if (!worse(scores[i], scores[p])) return;
+            swap(i, p);
+            i = p;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i, l = 2*i + 1, r = l + 1;
+            if (l < size && worse(scores[l], scores[worst])) worst = l;
+            if (r < size && worse(scores[r], scores[worst])) worst = r;
+            if (worst == i) return;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int v = vertices[i];
+        vertices[i] = vertices[j];
+        vertices[j] = v;
+        double s = scores[i];
+        scores[i] = scores[j];
+        scores[j] = s;
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * Orders that renumber the actors of a CSRGraph so that actors searched together sit together in memory. Actors are
+ * numbered in the order actors.txt lists them, which has nothing to do with who costarred with whom, so a BFS reads
+ * the distance and parent of each neighbor from anywhere in its arrays. Renumbered by one of these orders and packed
+ * again, the graph keeps costars' entries close, and neighbors' edge slices near each other:
+ *
+ *   degree - most costars first, so the hubs that almost every search passes through share a few cache lines
+ *   bfs - the order a BFS from the busiest actor of each component reaches the actors, so each level of a search
+ *         is a few runs of consecutive indices
+ *   rcm - reverse Cuthill-McKee: a BFS from an actor on the edge of each component, taking each actor's costars by
+ *         increasing degree, reversed, which keeps every edge's two ends close together
+ *
+ * Each order is returned as old vertex index -> new vertex index, for CSRGraph.Builder.reorder.
+ * @author - Andres Ibarra, Spring 2021, CS10 Problem Set 4
+ */
+public class VertexOrder {
+    public static final String[] NAMES = {"load", "degree", "bfs", "rcm"};  //orders of(name, g) knows
+
+    /**
+     * @param name - one of NAMES
+     * @param g - graph to renumber
+     * @return - old vertex index -> new vertex index, or null to keep the load order
+     * @throws IllegalArgumentException if there is no order with that name
+     */
+    public static int[] of(String name, CSRGraph g) {
+        switch (name) {
+            case "load": return null;
+            case "degree": return degree(g);
+            case "bfs": return bfs(g);
+            case "rcm": return rcm(g);
+            default: throw new IllegalArgumentException("Unknown vertex order " + name);
+        }
+    }
+
+    /**
+     * @param g - graph to renumber
+     * @return - old vertex index -> new vertex index, by decreasing degree (ties keep their order), with a counting sort
+     */
+    public static int[] degree(CSRGraph g) {
+        int n = g.numVertices(), maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxDegree = Math.max(maxDegree, g.degree(v));
+        }
+        int[] start = new int[maxDegree+2]; //maxDegree - degree -> first new index of that degree
+        for (int v = 0; v < n; v++) {
+            start[maxDegree - g.degree(v) + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d+1] += start[d];
+        }
+        int[] newIndex = new int[n];
+        for (int v = 0; v < n; v++) {
+            newIndex[v] = start[maxDegree - g.degree(v)]++;
+        }
+        return newIndex;
+    }
+
+    /**
+     * @param g - graph to renumber
+     * @return - old vertex index -> new vertex index, in the order BFSs reach the actors, each starting from the
+     * actor of highest degree not reached yet
+     */
+    public static int[] bfs(CSRGraph g) {
+        int n = g.numVertices();
+        int[] byDegree = inverse(degree(g));
+        int[] newIndex = new int[n], queue = new int[n];
+        Arrays.fill(newIndex, -1);
+        int numbered = 0;
+        for (int root: byDegree) {
+            if (newIndex[root] >= 0) continue;
+            int tail = numbered;
+            queue[tail++] = root;
+            newIndex[root] = numbered;
+            for (int head = numbered; head < tail; head++) {
+                int u = queue[head];
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.target(e);
+                    if (newIndex[v] < 0) {
+                        newIndex[v] = tail;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            numbered = tail;
+        }
+        return newIndex;
+    }
+
+    /**
+     * @param g - graph to renumber
+     * @return - old vertex index -> new vertex index, in reverse Cuthill-McKee order
+     */
+    public static int[] rcm(CSRGraph g) {
+        int n = g.numVertices();
+        int[] byDegree = inverse(degree(g));
+        int[] order = new int[n], distance = new int[n];
+        boolean[] placed = new boolean[n];
+        long[] keys = new long[16]; //(degree, vertex) of the costars being sorted
+        Arrays.fill(distance, -1);
+        int numbered = 0;
+        for (int i = n - 1; i >= 0; i--) { //lowest degree first
+            if (placed[byDegree[i]]) continue;
+            int root = peripheral(g, byDegree[i], order, numbered, distance);
+            int tail = numbered;
+            order[tail++] = root;
+            placed[root] = true;
+            for (int head = numbered; head < tail; head++) {
+                int u = order[head], count = 0;
+                if (keys.length < g.degree(u)) keys = new long[Math.max(g.degree(u), keys.length * 2)];
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.target(e);
+                    if (!placed[v]) {
+                        placed[v] = true;
+                        keys[count++] = ((long) g.degree(v) << 32) | v;
+                    }
+                }
+                Arrays.sort(keys, 0, count);
+                for (int k = 0; k < count; k++) {
+                    order[tail++] = (int) keys[k];
+                }
+            }
+            numbered = tail;
+        }
+        int[] newIndex = new int[n];
+        for (int k = 0; k < n; k++) {
+            newIndex[order[k]] = n - 1 - k;
+        }
+        return newIndex;
+    }
+
+    /**
+     * Helper function for rcm: find an actor far from the rest of its component, by searching from a start and
+     * moving to a lowest-degree actor of the last level until the search gets no deeper (the George-Liu heuristic)
+     * @param g - graph
+     * @param start - actor to begin from
+     * @param queue - room for the component's actors, from position from on
+     * @param from - first free position of queue
+     * @param distance - vertex -> -1 for every actor of the component; left that way
+     * @return - an actor at the end of a longest path found from start
+     */
+    private static int peripheral(CSRGraph g, int start, int[] queue, int from, int[] distance) {
+        int root = start, depth = -1;
+        for (int sweep = 0; sweep < 8; sweep++) { //each sweep gets deeper or stops; a few are enough
+            int tail = from;
+            queue[tail++] = root;
+            distance[root] = 0;
+            for (int head = from; head < tail; head++) {
+                int u = queue[head];
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.target(e);
+                    if (distance[v] < 0) {
+                        distance[v] = distance[u] + 1;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            int last = distance[queue[tail-1]], next = queue[tail-1];
+            for (int k = tail - 1; k >= from && distance[queue[k]] == last; k--) {
+                if (g.degree(queue[k]) < g.degree(next)) next = queue[k];
+            }
+            for (int k = from; k < tail; k++) {
+                distance[queue[k]] = -1;
+            }
+            if (last <= depth) break;
+            depth = last;
+            root = next;
+        }
+        return root;
+    }
+
+    /**
+     * @param newIndex - old vertex index -> new vertex index
+     * @return - new vertex index -> old vertex index
+     */
+    public static int[] inverse(int[] newIndex) {
+        int[] oldIndex = new int[newIndex.length];
+        for (int v = 0; v < newIndex.length; v++) {
+            oldIndex[newIndex[v]] = v;
+        }
+        return oldIndex;
+    }
+}